@@ -0,0 +1,124 @@
+import java.text.Normalizer;
+
+/**
+ * Le repli des lettres latines accentuées sur leur lettre de base : 'é', 'è',
+ *  'ê' et 'ë' se replient sur 'e', 'À' sur 'A', 'ç' sur 'c', etc.
+ * Le repli est décidé une seule fois pour les 65 536 caractères possibles
+ *  et rangé dans une table : fold et letterRank ne coûtent ensuite qu'un
+ *  accès à cette table.
+ * Une lettre se replie lorsque sa décomposition canonique (Unicode NFD) est
+ *  une lettre non accentuée suivie uniquement de diacritiques ; les
+ *  ligatures ('œ', 'æ') et les lettres sans décomposition ('ß', 'ø') ne se
+ *  replient donc pas.
+ * @inv <pre>
+ *     forall c :
+ *         SubstCipher.isNonAccentedLetter(c) ==> fold(c) == c
+ *         isLatinLetter(c) <==> SubstCipher.isNonAccentedLetter(fold(c))
+ *         !isLatinLetter(c) ==> fold(c) == c
+ *         isLatinLetter(c) ==> letterRank(c) == (fold(c) | 0x20) - 'a'
+ *         !isLatinLetter(c) ==> letterRank(c) == -1 </pre>
+ */
+public final class AccentFolding {
+
+    // ATTRIBUTS STATIQUES
+
+    /**
+     * Nombre de caractères couverts par la table de repli.
+     */
+    private static final int TABLE_SIZE = Character.MAX_VALUE + 1;
+
+    /**
+     * La table de repli : FOLD[c] est la lettre non accentuée sur laquelle
+     *  se replie c, ou 0 si c n'est pas une lettre latine.
+     */
+    private static final char[] FOLD = buildFoldTable();
+
+    // CONSTRUCTEURS
+
+    private AccentFolding() {
+        // classe utilitaire
+    }
+
+    // REQUETES
+
+    /**
+     * Vérifie si c est une lettre latine, accentuée ou non.
+     */
+    public static boolean isLatinLetter(char c) {
+        return FOLD[c] != 0;
+    }
+
+    /**
+     * La lettre non accentuée (de même casse) sur laquelle se replie c s'il
+     *  s'agit d'une lettre latine, c sinon.
+     */
+    public static char fold(char c) {
+        char f = FOLD[c];
+        return f == 0 ? c : f;
+    }
+
+    /**
+     * Le rang dans l'alphabet (de 0 pour 'a' à 25 pour 'z') de la lettre sur
+     *  laquelle se replie c, ou -1 si c n'est pas une lettre latine.
+     */
+    public static int letterRank(char c) {
+        char f = FOLD[c];
+        return f == 0 ? -1 : (f | 0x20) - 'a';
+    }
+
+    /**
+     * La chaîne text dont chaque lettre latine est repliée.
+     * @pre <pre>
+     *     text != null </pre>
+     * @post <pre>
+     *     result.length() == text.length()
+     *     forall i, 0 <= i < text.length() :
+     *         result.charAt(i) == fold(text.charAt(i)) </pre>
+     */
+    public static String fold(String text) {
+        if (text == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        char[] result = new char[text.length()];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = fold(text.charAt(i));
+        }
+        return new String(result);
+    }
+
+    // OUTILS
+
+    /**
+     * Construit la table de repli de tous les caractères.
+     */
+    private static char[] buildFoldTable() {
+        char[] fold = new char[TABLE_SIZE];
+        for (int i = 0; i < TABLE_SIZE; ++i) {
+            char c = (char) i;
+            if (SubstCipher.isNonAccentedLetter(c)) {
+                fold[i] = c;
+            } else if (Character.isLetter(c)) {
+                fold[i] = baseLetter(c);
+            }
+        }
+        return fold;
+    }
+
+    /**
+     * La lettre non accentuée dont c est une forme accentuée, 0 s'il n'y en
+     *  a pas.
+     */
+    private static char baseLetter(char c) {
+        String d = Normalizer.normalize(String.valueOf(c),
+                Normalizer.Form.NFD);
+        if (d.length() < 2 || !SubstCipher.isNonAccentedLetter(d.charAt(0))) {
+            return 0;
+        }
+        for (int i = 1; i < d.length(); ++i) {
+            if (Character.getType(d.charAt(i)) != Character.NON_SPACING_MARK) {
+                return 0;
+            }
+        }
+        return d.charAt(0);
+    }
+}
@@ -0,0 +1,458 @@
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * Un codeur immuable selon le principe du décalage circulaire (technique de
+ *  "César"), de décalage fixé une fois pour toutes.
+ * Contrairement à SubstCipher, un CaesarCodec n'a aucun état modifiable :
+ *  ses méthodes sont des fonctions pures et peuvent être appelées
+ *  simultanément par un nombre quelconque de threads, sans verrou.
+ * Les 2 * ALPHABET_SIZE - 1 codeurs possibles sont construits une seule fois
+ *  et obtenus par of(shift), sans allocation.
+ * encode décale les lettres non accentuées de getShift() positions (à droite
+ *  si getShift() >= 0), decode les décale de -getShift() positions ; les
+ *  autres caractères sont recopiés tels quels.
+ * Un codeur qui replie les accents (obtenu par of(shift, true)) décale en
+ *  outre les lettres latines accentuées, après les avoir repliées sur leur
+ *  lettre de base par AccentFolding : 'é' est décalé comme 'e' et perd son
+ *  accent. Le décodage d'un tel codage restitue donc le message replié.
+ * @inv <pre>
+ *     -ALPHABET_SIZE < getShift() < ALPHABET_SIZE
+ *     inverse().getShift() == -getShift()
+ *     inverse().isFoldingAccents() == isFoldingAccents() </pre>
+ */
+public final class CaesarCodec {
+
+    // ATTRIBUTS STATIQUES
+
+    /**
+     * Taille de l'alphabet.
+     */
+    public static final int ALPHABET_SIZE = SubstCipher.ALPHABET_SIZE;
+
+    /**
+     * Nombre de caractères couverts par les tables de translation (les
+     *  lettres non accentuées sont toutes des caractères ASCII).
+     */
+    private static final int TABLE_SIZE = 128;
+
+    /**
+     * Les codeurs de tous les décalages légaux : CODECS[shift + ALPHABET_SIZE
+     *  - 1] est le codeur de décalage shift.
+     */
+    private static final CaesarCodec[] CODECS = buildCodecs(false);
+
+    /**
+     * Nombre d'octets distincts couverts par les tables de translation des
+     *  octets (ISO-8859-1).
+     */
+    private static final int BYTE_TABLE_SIZE = 256;
+
+    // ATTRIBUTS
+
+    /**
+     * Le décalage de ce codeur.
+     */
+    private final int shift;
+
+    /**
+     * La table de translation de ce codeur : table[c] est le caractère c
+     *  décalé circulairement de shift positions, pour tout c < TABLE_SIZE.
+     */
+    private final char[] table;
+
+    /**
+     * La table de translation des octets de ce codeur : byteTable[b & 0xFF]
+     *  est l'octet b (ASCII ou ISO-8859-1) encodé par ce codeur.
+     */
+    private final byte[] byteTable;
+
+    /**
+     * Ce codeur décale-t-il aussi les lettres accentuées, après repli ?
+     */
+    private final boolean foldAccents;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Un codeur de décalage shift, repliant les accents si foldAccents.
+     * @pre <pre>
+     *     -ALPHABET_SIZE < shift < ALPHABET_SIZE </pre>
+     * @post <pre>
+     *     getShift() == shift
+     *     isFoldingAccents() == foldAccents </pre>
+     */
+    private CaesarCodec(int shift, boolean foldAccents) {
+        this.shift = shift;
+        this.foldAccents = foldAccents;
+        this.table = new char[TABLE_SIZE];
+        for (char c = 0; c < TABLE_SIZE; ++c) {
+            table[c] = shiftChar(c, shift);
+        }
+        this.byteTable = new byte[BYTE_TABLE_SIZE];
+        for (int b = 0; b < BYTE_TABLE_SIZE; ++b) {
+            byteTable[b] = (byte) (b < TABLE_SIZE ? table[b]
+                    : foldAccents ? encodeAccented((char) b) : b);
+        }
+    }
+
+    /**
+     * Le codeur (partagé) de décalage shift.
+     * @pre <pre>
+     *     -ALPHABET_SIZE < shift < ALPHABET_SIZE </pre>
+     * @post <pre>
+     *     result.getShift() == shift
+     *     result == of(shift) </pre>
+     */
+    public static CaesarCodec of(int shift) {
+        return of(shift, false);
+    }
+
+    /**
+     * Le codeur (partagé) de décalage shift, repliant les accents si
+     *  foldAccents.
+     * @pre <pre>
+     *     -ALPHABET_SIZE < shift < ALPHABET_SIZE </pre>
+     * @post <pre>
+     *     result.getShift() == shift
+     *     result.isFoldingAccents() == foldAccents
+     *     result == of(shift, foldAccents) </pre>
+     */
+    public static CaesarCodec of(int shift, boolean foldAccents) {
+        if (shift <= -ALPHABET_SIZE || shift >= ALPHABET_SIZE) {
+            throw new IllegalArgumentException("Le décalage doit être dans"
+                    + " l'intervalle (-" + ALPHABET_SIZE + ", " + ALPHABET_SIZE
+                    + ")");
+        }
+        return (foldAccents ? FoldingCodecs.CODECS : CODECS)[shift
+                + ALPHABET_SIZE - 1];
+    }
+
+    // REQUETES
+
+    /**
+     * Le décalage de ce codeur.
+     */
+    public int getShift() {
+        return shift;
+    }
+
+    /**
+     * Ce codeur décale-t-il aussi les lettres accentuées, après repli ?
+     */
+    public boolean isFoldingAccents() {
+        return foldAccents;
+    }
+
+    /**
+     * Le codeur de décalage opposé, dont encode est le decode de ce codeur.
+     * @post <pre>
+     *     result == of(-getShift(), isFoldingAccents()) </pre>
+     */
+    public CaesarCodec inverse() {
+        return (foldAccents ? FoldingCodecs.CODECS : CODECS)[-shift
+                + ALPHABET_SIZE - 1];
+    }
+
+    /**
+     * Le caractère c décalé de getShift() s'il s'agit d'une lettre non
+     *  accentuée (ou, si isFoldingAccents(), d'une lettre latine, repliée
+     *  avant d'être décalée), c sinon.
+     */
+    public char encode(char c) {
+        if (c < TABLE_SIZE) {
+            return table[c];
+        }
+        return foldAccents ? encodeAccented(c) : c;
+    }
+
+    /**
+     * La chaîne text dont les lettres non accentuées sont décalées de
+     *  getShift().
+     * @pre <pre>
+     *     text != null </pre>
+     * @post <pre>
+     *     result.length() == text.length()
+     *     forall i, 0 <= i < text.length() :
+     *         result.charAt(i) == encode(text.charAt(i)) </pre>
+     */
+    public String encode(String text) {
+        if (text == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        char[] result = new char[text.length()];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = encode(text.charAt(i));
+        }
+        return new String(result);
+    }
+
+    /**
+     * La chaîne text dont les lettres non accentuées sont décalées de
+     *  -getShift().
+     * @pre <pre>
+     *     text != null </pre>
+     * @post <pre>
+     *     result.equals(inverse().encode(text)) </pre>
+     */
+    public String decode(String text) {
+        return inverse().encode(text);
+    }
+
+    /**
+     * Range dans dst, à partir de dstPos, les length caractères de src à
+     *  partir de srcPos décalés de getShift(). Aucun objet n'est alloué ;
+     *  src et dst peuvent désigner le même tableau.
+     * @pre <pre>
+     *     src != null && dst != null
+     *     0 <= srcPos && srcPos + length <= src.length
+     *     0 <= dstPos && dstPos + length <= dst.length </pre>
+     * @post <pre>
+     *     forall i, 0 <= i < length :
+     *         dst[dstPos + i] == encode(old src[srcPos + i]) </pre>
+     */
+    public void encode(char[] src, int srcPos, char[] dst, int dstPos,
+            int length) {
+        assert src != null && dst != null;
+        assert 0 <= srcPos && srcPos + length <= src.length;
+        assert 0 <= dstPos && dstPos + length <= dst.length;
+        for (int i = 0; i < length; ++i) {
+            char c = src[srcPos + i];
+            dst[dstPos + i] = c < TABLE_SIZE ? table[c]
+                    : foldAccents ? encodeAccented(c) : c;
+        }
+    }
+
+    /**
+     * Range dans dst, à partir de dstPos, les length caractères de src à
+     *  partir de srcPos décalés de -getShift(). Aucun objet n'est alloué ;
+     *  src et dst peuvent désigner le même tableau.
+     * @pre <pre>
+     *     src != null && dst != null
+     *     0 <= srcPos && srcPos + length <= src.length
+     *     0 <= dstPos && dstPos + length <= dst.length </pre>
+     * @post <pre>
+     *     dst est modifié comme par
+     *         inverse().encode(src, srcPos, dst, dstPos, length) </pre>
+     */
+    public void decode(char[] src, int srcPos, char[] dst, int dstPos,
+            int length) {
+        inverse().encode(src, srcPos, dst, dstPos, length);
+    }
+
+    /**
+     * Range dans dst les caractères restants de src décalés de getShift().
+     *  Les positions de src et dst avancent du nombre de caractères traités ;
+     *  aucun objet n'est alloué.
+     * @pre <pre>
+     *     src != null && dst != null
+     *     dst.remaining() >= src.remaining() </pre>
+     * @post <pre>
+     *     !src.hasRemaining()
+     *     dst a reçu les caractères de src décalés de getShift() </pre>
+     */
+    public void encode(CharBuffer src, CharBuffer dst) {
+        assert src != null && dst != null;
+        assert dst.remaining() >= src.remaining();
+        while (src.hasRemaining()) {
+            char c = src.get();
+            dst.put(c < TABLE_SIZE ? table[c]
+                    : foldAccents ? encodeAccented(c) : c);
+        }
+    }
+
+    /**
+     * Range dans dst les caractères restants de src décalés de -getShift().
+     *  Les positions de src et dst avancent du nombre de caractères traités ;
+     *  aucun objet n'est alloué.
+     * @pre <pre>
+     *     src != null && dst != null
+     *     dst.remaining() >= src.remaining() </pre>
+     * @post <pre>
+     *     !src.hasRemaining()
+     *     dst a reçu les caractères de src décalés de -getShift() </pre>
+     */
+    public void decode(CharBuffer src, CharBuffer dst) {
+        inverse().encode(src, dst);
+    }
+
+    /**
+     * Range dans dst, à partir de dstPos, les length octets (ASCII ou
+     *  ISO-8859-1) de src à partir de srcPos encodés par ce codeur, à
+     *  raison d'un accès à une table de 256 octets par octet. Aucun objet
+     *  n'est alloué ; src et dst peuvent désigner le même tableau.
+     * Les octets d'un texte UTF-8 non ASCII ne sont jamais modifiés par un
+     *  codeur qui ne replie pas les accents.
+     * @pre <pre>
+     *     src != null && dst != null
+     *     0 <= srcPos && srcPos + length <= src.length
+     *     0 <= dstPos && dstPos + length <= dst.length </pre>
+     * @post <pre>
+     *     forall i, 0 <= i < length :
+     *         dst[dstPos + i]
+     *             == (byte) encode((char) (old src[srcPos + i] & 0xFF)) </pre>
+     */
+    public void encode(byte[] src, int srcPos, byte[] dst, int dstPos,
+            int length) {
+        assert src != null && dst != null;
+        assert 0 <= srcPos && srcPos + length <= src.length;
+        assert 0 <= dstPos && dstPos + length <= dst.length;
+        for (int i = 0; i < length; ++i) {
+            dst[dstPos + i] = byteTable[src[srcPos + i] & 0xFF];
+        }
+    }
+
+    /**
+     * Range dans dst, à partir de dstPos, les length octets de src à partir
+     *  de srcPos décodés par ce codeur. Aucun objet n'est alloué ; src et
+     *  dst peuvent désigner le même tableau.
+     * @pre <pre>
+     *     src != null && dst != null
+     *     0 <= srcPos && srcPos + length <= src.length
+     *     0 <= dstPos && dstPos + length <= dst.length </pre>
+     * @post <pre>
+     *     dst est modifié comme par
+     *         inverse().encode(src, srcPos, dst, dstPos, length) </pre>
+     */
+    public void decode(byte[] src, int srcPos, byte[] dst, int dstPos,
+            int length) {
+        inverse().encode(src, srcPos, dst, dstPos, length);
+    }
+
+    /**
+     * Range dans dst, à partir de l'indice absolu dstPos, les length octets
+     *  de src à partir de l'indice absolu srcPos encodés par ce codeur. Les
+     *  positions et limites des tampons ne sont pas modifiées ; src et dst
+     *  peuvent désigner le même tampon.
+     * @pre <pre>
+     *     src != null && dst != null
+     *     0 <= srcPos && srcPos + length <= src.limit()
+     *     0 <= dstPos && dstPos + length <= dst.limit() </pre>
+     * @post <pre>
+     *     forall i, 0 <= i < length :
+     *         dst.get(dstPos + i)
+     *             == (byte) encode((char) (old src.get(srcPos + i) & 0xFF))
+     * </pre>
+     */
+    public void encode(ByteBuffer src, int srcPos, ByteBuffer dst,
+            int dstPos, int length) {
+        assert src != null && dst != null;
+        if (src.hasArray() && dst.hasArray() && !dst.isReadOnly()) {
+            encode(src.array(), src.arrayOffset() + srcPos,
+                    dst.array(), dst.arrayOffset() + dstPos, length);
+        } else {
+            for (int i = 0; i < length; ++i) {
+                dst.put(dstPos + i, byteTable[src.get(srcPos + i) & 0xFF]);
+            }
+        }
+    }
+
+    /**
+     * Encode sur place les octets restants de buffer (un tampon réseau,
+     *  par exemple). La position de buffer avance jusqu'à sa limite ; aucun
+     *  objet n'est alloué.
+     * @pre <pre>
+     *     buffer != null && !buffer.isReadOnly() </pre>
+     * @post <pre>
+     *     !buffer.hasRemaining()
+     *     les octets entre old buffer.position() et buffer.limit() sont
+     *         encodés par ce codeur </pre>
+     */
+    public void encode(ByteBuffer buffer) {
+        assert buffer != null;
+        int pos = buffer.position();
+        encode(buffer, pos, buffer, pos, buffer.limit() - pos);
+        buffer.position(buffer.limit());
+    }
+
+    /**
+     * Décode sur place les octets restants de buffer. La position de buffer
+     *  avance jusqu'à sa limite ; aucun objet n'est alloué.
+     * @pre <pre>
+     *     buffer != null && !buffer.isReadOnly() </pre>
+     * @post <pre>
+     *     buffer est modifié comme par inverse().encode(buffer) </pre>
+     */
+    public void decode(ByteBuffer buffer) {
+        inverse().encode(buffer);
+    }
+
+    // OUTILS
+
+    /**
+     * Une représentation sous forme de chaîne de ce codeur.
+     * @post
+     *     result.equals("CaesarCodec[shift:" + getShift()
+     *         + (isFoldingAccents() ? ";foldAccents" : "") + "]")
+     */
+    public String toString() {
+        return "CaesarCodec[shift:" + shift
+                + (foldAccents ? ";foldAccents" : "") + "]";
+    }
+
+    /**
+     * Le caractère c (hors ASCII) replié puis décalé s'il s'agit d'une
+     *  lettre latine accentuée, c sinon.
+     * @pre <pre>
+     *     c >= TABLE_SIZE </pre>
+     */
+    private char encodeAccented(char c) {
+        assert foldAccents;
+        char f = AccentFolding.fold(c);
+        return f < TABLE_SIZE ? table[f] : c;
+    }
+
+    /**
+     * Construit les codeurs de tous les décalages légaux, repliant les
+     *  accents si foldAccents.
+     * @post <pre>
+     *     result.length == 2 * ALPHABET_SIZE - 1
+     *     forall i, 0 <= i < result.length :
+     *         result[i].getShift() == i - ALPHABET_SIZE + 1
+     *         result[i].isFoldingAccents() == foldAccents </pre>
+     */
+    private static CaesarCodec[] buildCodecs(boolean foldAccents) {
+        CaesarCodec[] codecs = new CaesarCodec[2 * ALPHABET_SIZE - 1];
+        for (int shift = -ALPHABET_SIZE + 1; shift < ALPHABET_SIZE; ++shift) {
+            codecs[shift + ALPHABET_SIZE - 1] =
+                    new CaesarCodec(shift, foldAccents);
+        }
+        return codecs;
+    }
+
+    /**
+     * Le caractère c décalé circulairement de shift positions dans l'alphabet.
+     * N'est utilisé que pour construire les tables de translation.
+     * @pre <pre>
+     *     -ALPHABET_SIZE < shift < ALPHABET_SIZE </pre>
+     * @post <pre>
+     *     !SubstCipher.isNonAccentedLetter(c)
+     *         ==> result == c
+     *     SubstCipher.isNonAccentedLetter(c) && shift >= 0
+     *         ==> result == décalé vers la droite de c
+     *     SubstCipher.isNonAccentedLetter(c) && shift < 0
+     *         ==> result == décalé vers la gauche de c </pre>
+     */
+    private static char shiftChar(char c, int shift) {
+        if (!SubstCipher.isNonAccentedLetter(c)) {
+            return c;
+        }
+        char base;
+        if (Character.isUpperCase(c)) {
+            base = 'A';
+        } else {
+            base = 'a';
+        }
+        return (char) (base
+                + (c - base + shift + ALPHABET_SIZE) % ALPHABET_SIZE);
+    }
+
+    /**
+     * Les codeurs repliant les accents, rangés comme CODECS. Ils ne sont
+     *  construits (avec la table de AccentFolding) qu'au premier appel de
+     *  of(shift, true).
+     */
+    private static final class FoldingCodecs {
+        static final CaesarCodec[] CODECS = buildCodecs(true);
+    }
+}
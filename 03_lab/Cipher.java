@@ -1,4 +1,14 @@
-import java.util.StringTokenizer;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Un chiffreur/déchiffreur de messages.
@@ -31,6 +41,14 @@ import java.util.StringTokenizer;
  * </ol>
  * </li>
  * </ul>
+ * Les méthodes statiques encodeWords et decodeWords (sur des flux, des
+ *  plages de caractères ou des fichiers) n'appliquent que l'étape mot à mot,
+ *  sans décalage global : ce sont les primitives des traitements par
+ *  morceaux (CipherProcessor, CipherArchive), qui ne peuvent pas attendre
+ *  l'histogramme de tout le message pour deviner ce décalage avant d'en
+ *  écrire le début. Leur résultat n'est donc pas déchiffré par
+ *  setCipherText. Le chiffrage complet d'un message est celui de
+ *  setClearText et getCipherText, ou de encodeAll et decodeAll pour un lot.
  * @inv <pre>
  *     getClearText() != null
  *     getCipherText() != null
@@ -40,6 +58,12 @@ public class Cipher {
 
     // ATTRIBUTS STATIQUES
 
+    /**
+     * Seuil de parallélisation par défaut : taille (en caractères) au-delà
+     *  de laquelle un message est transformé en parallèle.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 20;
+
     /**
      * Drapeau pour transformWords indiquant que l'on souhaite encoder.
      */
@@ -55,23 +79,64 @@ public class Cipher {
      */
     private static final String SEPARATORS = " \t\n\r\f\'\"([-,?;.:!])";
 
+    /**
+     * Ensemble des caractères de SEPARATORS sous forme de bitmap : le bit
+     *  (c % 64) de SEPARATOR_BITS[c / 64] vaut 1 ssi c est un séparateur.
+     * Tous les séparateurs sont des caractères ASCII.
+     */
+    private static final long[] SEPARATOR_BITS = buildSeparatorBits();
+
     /**
      * Taille de l'alphabet.
      */
     private static final int ALPHABET_SIZE = SubstCipher.ALPHABET_SIZE;
 
+    /**
+     * Taille initiale du tampon utilisé par encodeWords et decodeWords pour lire les
+     *  flux par morceaux.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Taille initiale (en octets) d'une fenêtre de fichier projetée en
+     *  mémoire par encodeWords et decodeWords.
+     */
+    private static final int MAP_WINDOW_SIZE = 1 << 26;
+
+    /**
+     * Taille du tableau de travail de guessGlobalShift : une table des
+     *  lettres par longueur de mot, suivie d'un histogramme.
+     */
+    private static final int GUESS_SCRATCH_SIZE =
+            ALPHABET_SIZE * (ALPHABET_SIZE + 1);
+
     // ATTRIBUTS
 
     /**
-     * Le message courant en clair.
+     * Le message courant en clair, ou null s'il reste à calculer à partir
+     *  de cipherText.
      */
     private String clearText;
 
     /**
-     * Le message courant chiffré.
+     * Le message courant chiffré, ou null s'il reste à calculer à partir
+     *  de clearText.
+     * clearText et cipherText ne sont jamais null simultanément.
      */
     private String cipherText;
 
+    /**
+     * Taille (en caractères) au-delà de laquelle les messages de ce
+     *  chiffreur sont découpés et transformés en parallèle.
+     */
+    private int parallelThreshold;
+
+    /**
+     * Ce chiffreur décale-t-il aussi les lettres accentuées, repliées sur
+     *  leur lettre de base ?
+     */
+    private boolean accentFolding;
+
     // CONSTRUCTEURS
 
     /**
@@ -79,35 +144,68 @@ public class Cipher {
      *  retournent la chaîne vide.
      * @post <pre>
      *     getClearText().equals("")
-     *     getCipherText().equals("") </pre>
+     *     getCipherText().equals("")
+     *     getParallelThreshold() == DEFAULT_PARALLEL_THRESHOLD
+     *     !isAccentFolding() </pre>
      */
     public Cipher() {
         this.clearText = "";
         this.cipherText = "";
+        this.parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+        this.accentFolding = false;
     }
 
     // REQUETES
 
     /**
      * Le message courant en clair. Sa valeur correspond au message décodé de
-     *  getCipherText().
+     *  getCipherText() ; s'il a été fixé par setCipherText, il est calculé
+     *  lors du premier appel puis conservé.
      */
     public String getClearText() {
+        if (clearText == null) {
+            clearText = decipher(cipherText, parallelThreshold,
+                    accentFolding);
+        }
         return clearText;
     }
 
     /**
      * Le message courant chiffré. Sa valeur correspond au message encodé de
-     *  getClearText().
+     *  getClearText() ; s'il a été fixé par setClearText, il est calculé
+     *  lors du premier appel puis conservé.
      */
     public String getCipherText() {
+        if (cipherText == null) {
+            cipherText = encipher(clearText, parallelThreshold,
+                    accentFolding);
+        }
         return cipherText;
     }
 
+    /**
+     * La taille (en caractères) au-delà de laquelle les messages de ce
+     *  chiffreur sont transformés en parallèle.
+     */
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Ce chiffreur décale-t-il aussi les lettres latines accentuées,
+     *  repliées sur leur lettre de base ?
+     */
+    public boolean isAccentFolding() {
+        return accentFolding;
+    }
+
     // COMMANDES
 
     /**
-     * Modification du message courant en clair.
+     * Modification du message courant en clair. Le message chiffré sera
+     *  obtenu, au premier appel de getCipherText(), par les deux étapes du
+     *  chiffrage avec un nouveau décalage global aléatoire, fusionnées en un
+     *  seul parcours de text (voir encipher).
      * @pre <pre>
      *     text != null </pre>
      * @post <pre>
@@ -118,11 +216,13 @@ public class Cipher {
             throw new AssertionError("la référence est vide");
         }
         this.clearText = text;
-        this.cipherText = transformWords(text, ENCODE);
+        this.cipherText = null;
     }
 
     /**
-     * Modification du message courant chiffré.
+     * Modification du message courant chiffré. Le message en clair sera
+     *  obtenu, au premier appel de getClearText(), par les deux étapes du
+     *  déchiffrage, fusionnées en deux parcours de text (voir decipher).
      * @pre <pre>
      *     text != null </pre>
      * @post <pre>
@@ -133,11 +233,247 @@ public class Cipher {
             throw new AssertionError("la référence est vide");
         }
         this.cipherText = text;
-        this.clearText = transformWords(text, DECODE);
+        this.clearText = null;
+    }
+
+    /**
+     * Modification du seuil de parallélisation de ce chiffreur. Le résultat
+     *  des transformations ne dépend pas de ce seuil.
+     * @pre <pre>
+     *     threshold > 0 </pre>
+     * @post <pre>
+     *     getParallelThreshold() == threshold </pre>
+     */
+    public void setParallelThreshold(int threshold) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException(
+                    "Le seuil de parallélisation doit être strictement positif");
+        }
+        this.parallelThreshold = threshold;
+    }
+
+    /**
+     * Active (folding == true) ou désactive le repli des accents lors des
+     *  prochains calculs de getCipherText() ou getClearText().
+     * Sans repli, les lettres accentuées ne sont pas chiffrées : un mot
+     *  comme "derrière" laisse fuir son 'è' et les 'é' d'un texte français
+     *  échappent à l'histogramme qui sert à deviner le décalage global.
+     *  Avec repli, chaque lettre latine accentuée est chiffrée comme sa
+     *  lettre de base (voir AccentFolding) et comptée comme elle ; en
+     *  contrepartie, le déchiffré est le message clair sans ses accents.
+     * @post <pre>
+     *     isAccentFolding() == folding </pre>
+     */
+    public void setAccentFolding(boolean folding) {
+        this.accentFolding = folding;
     }
 
     // OUTILS
 
+    /**
+     * Encodage mot à mot du flux in vers le flux out, morceau par morceau.
+     * La mémoire utilisée est bornée par BUFFER_SIZE et la longueur du plus
+     *  long mot rencontré, quelle que soit la taille du flux.
+     * Les flux ne sont pas fermés.
+     * @pre <pre>
+     *     in != null && out != null </pre>
+     * @post <pre>
+     *     out a reçu l'encodage mot à mot de tout ce qui a été lu sur in </pre>
+     */
+    public static void encodeWords(Reader in, Writer out) throws IOException {
+        transformStream(in, out, ENCODE);
+    }
+
+    /**
+     * Décodage mot à mot du flux in vers le flux out, morceau par morceau.
+     * La mémoire utilisée est bornée par BUFFER_SIZE et la longueur du plus
+     *  long mot rencontré, quelle que soit la taille du flux.
+     * Les flux ne sont pas fermés.
+     * @pre <pre>
+     *     in != null && out != null </pre>
+     * @post <pre>
+     *     out a reçu le décodage mot à mot de tout ce qui a été lu sur in </pre>
+     */
+    public static void decodeWords(Reader in, Writer out) throws IOException {
+        transformStream(in, out, DECODE);
+    }
+
+    /**
+     * Encodage mot à mot, sur place, des caractères de text compris entre
+     *  from (inclus) et to (exclu). Aucun objet n'est alloué.
+     * Le résultat ne dépend que des mots de la plage : si from et to
+     *  bordent des mots entiers (début ou fin du texte, ou voisins d'un
+     *  séparateur), il coïncide avec l'encodage de tout le texte.
+     * @pre <pre>
+     *     text != null
+     *     0 <= from <= to <= text.length </pre>
+     * @post <pre>
+     *     text[from..to[ est l'encodage mot à mot de old text[from..to[ </pre>
+     */
+    public static void encodeWords(char[] text, int from, int to) {
+        if (text == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        if (from < 0 || from > to || to > text.length) {
+            throw new IllegalArgumentException("plage invalide");
+        }
+        transformWords(text, from, to, ENCODE, 0, false);
+    }
+
+    /**
+     * Décodage mot à mot, sur place, des caractères de text compris entre
+     *  from (inclus) et to (exclu). Aucun objet n'est alloué.
+     * @pre <pre>
+     *     text != null
+     *     0 <= from <= to <= text.length </pre>
+     * @post <pre>
+     *     text[from..to[ est le décodage mot à mot de old text[from..to[ </pre>
+     */
+    public static void decodeWords(char[] text, int from, int to) {
+        if (text == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        if (from < 0 || from > to || to > text.length) {
+            throw new IllegalArgumentException("plage invalide");
+        }
+        transformWords(text, from, to, DECODE, 0, false);
+    }
+
+    /**
+     * Écrit dans le fichier target l'encodage mot à mot du fichier source
+     *  (texte ASCII ou ISO-8859-1).
+     * Les fichiers sont projetés en mémoire par fenêtres coupées sur des
+     *  séparateurs, et transformés d'une projection à l'autre sans copie
+     *  dans le tas. target est créé ou écrasé.
+     * @pre <pre>
+     *     source != null && target != null
+     *     source et target désignent des fichiers distincts </pre>
+     * @post <pre>
+     *     target contient l'encodage mot à mot du contenu de source </pre>
+     */
+    public static void encodeWords(Path source, Path target)
+            throws IOException {
+        transformFile(source, target, ENCODE);
+    }
+
+    /**
+     * Écrit dans le fichier target le décodage mot à mot du fichier source
+     *  (texte ASCII ou ISO-8859-1).
+     * Les fichiers sont projetés en mémoire par fenêtres coupées sur des
+     *  séparateurs, et transformés d'une projection à l'autre sans copie
+     *  dans le tas. target est créé ou écrasé.
+     * @pre <pre>
+     *     source != null && target != null
+     *     source et target désignent des fichiers distincts </pre>
+     * @post <pre>
+     *     target contient le décodage mot à mot du contenu de source </pre>
+     */
+    public static void decodeWords(Path source, Path target)
+            throws IOException {
+        transformFile(source, target, DECODE);
+    }
+
+    /**
+     * Chiffrage complet de chacun des messages du lot batch, comme par
+     *  setClearText (chaque message recevant son propre décalage global
+     *  aléatoire). Les messages chiffrés sont rangés dans une nouvelle
+     *  arène, aux mêmes bornes que dans batch.
+     * @pre <pre>
+     *     batch != null </pre>
+     * @post <pre>
+     *     result.getMessageCount() == batch.getMessageCount()
+     *     forall i, 0 <= i < batch.getMessageCount() :
+     *         result.getMessage(i) est le chiffré de batch.getMessage(i) </pre>
+     */
+    public static MessageBatch encodeAll(MessageBatch batch) {
+        if (batch == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        char[] result = new char[batch.getChars().length];
+        encodeAll(batch.getChars(), batch.getOffsets(), result);
+        return new MessageBatch(result, batch.getOffsets());
+    }
+
+    /**
+     * Déchiffrage complet de chacun des messages du lot batch, comme par
+     *  setCipherText. Les messages déchiffrés sont rangés dans une nouvelle
+     *  arène, aux mêmes bornes que dans batch.
+     * @pre <pre>
+     *     batch != null </pre>
+     * @post <pre>
+     *     result.getMessageCount() == batch.getMessageCount()
+     *     forall i, 0 <= i < batch.getMessageCount() :
+     *         result.getMessage(i) est le déchiffré de batch.getMessage(i)
+     * </pre>
+     */
+    public static MessageBatch decodeAll(MessageBatch batch) {
+        if (batch == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        char[] result = new char[batch.getChars().length];
+        decodeAll(batch.getChars(), batch.getOffsets(), result);
+        return new MessageBatch(result, batch.getOffsets());
+    }
+
+    /**
+     * Chiffrage complet des messages rangés bout à bout dans src, le i-ème
+     *  occupant src[offsets[i]..offsets[i + 1][ ; le chiffré de chaque
+     *  message est rangé aux mêmes indices dans dst. src et dst peuvent
+     *  désigner le même tableau. Aucun objet n'est alloué par message.
+     * @pre <pre>
+     *     src != null && offsets != null && dst != null
+     *     offsets délimite des messages de src (voir MessageBatch)
+     *     offsets[offsets.length - 1] <= dst.length </pre>
+     * @post <pre>
+     *     forall i, 0 <= i < offsets.length - 1 :
+     *         dst[offsets[i]..offsets[i + 1][ est le chiffré de
+     *             old src[offsets[i]..offsets[i + 1][ </pre>
+     */
+    public static void encodeAll(char[] src, int[] offsets, char[] dst) {
+        if (src == null || offsets == null || dst == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        int end = checkBatch(src, offsets, dst);
+        if (src != dst) {
+            System.arraycopy(src, 0, dst, 0, end);
+        }
+        for (int i = 0; i < offsets.length - 1; ++i) {
+            transformWords(dst, offsets[i], offsets[i + 1], ENCODE,
+                    alea(1, ALPHABET_SIZE - 1), false);
+        }
+    }
+
+    /**
+     * Déchiffrage complet des messages rangés bout à bout dans src, le i-ème
+     *  occupant src[offsets[i]..offsets[i + 1][ ; le déchiffré de chaque
+     *  message est rangé aux mêmes indices dans dst. src et dst peuvent
+     *  désigner le même tableau. Aucun objet n'est alloué par message.
+     * @pre <pre>
+     *     src != null && offsets != null && dst != null
+     *     offsets délimite des messages de src (voir MessageBatch)
+     *     offsets[offsets.length - 1] <= dst.length </pre>
+     * @post <pre>
+     *     forall i, 0 <= i < offsets.length - 1 :
+     *         dst[offsets[i]..offsets[i + 1][ est le déchiffré de
+     *             old src[offsets[i]..offsets[i + 1][ </pre>
+     */
+    public static void decodeAll(char[] src, int[] offsets, char[] dst) {
+        if (src == null || offsets == null || dst == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        int end = checkBatch(src, offsets, dst);
+        if (src != dst) {
+            System.arraycopy(src, 0, dst, 0, end);
+        }
+        int[] counts = new int[GUESS_SCRATCH_SIZE];
+        for (int i = 0; i < offsets.length - 1; ++i) {
+            int offset = guessGlobalShift(dst, offsets[i], offsets[i + 1],
+                    counts, false);
+            transformWords(dst, offsets[i], offsets[i + 1], DECODE, offset,
+                    false);
+        }
+    }
+
     /**
      * Une représentation sous forme de chaîne de cet encodeur.
      * @post
@@ -145,7 +481,8 @@ public class Cipher {
      *         + ";cipher:" + getCipherText() + "]")
      */
     public String toString() {
-        return "Cipher[clear:" + clearText + ";cipher:" + cipherText + "]";
+        return "Cipher[clear:" + getClearText() + ";cipher:" + getCipherText()
+                + "]";
     }
 
     /**
@@ -162,53 +499,434 @@ public class Cipher {
     }
 
     /**
-     * indique si le mot word correspond à un séparateur.
+     * indique si le caractère c est un séparateur.
+     * @post <pre>
+     *     result <==> c est dans SEPARATORS </pre>
+     */
+    static boolean isSeparator(char c) {
+        return c < 128 && (SEPARATOR_BITS[c >>> 6] & (1L << c)) != 0;
+    }
+
+    /**
+     * Construit le bitmap des caractères de SEPARATORS.
+     * @post <pre>
+     *     forall c, 0 <= c < 128 :
+     *         (result[c / 64] & (1L << (c % 64))) != 0
+     *             <==> c est dans SEPARATORS </pre>
+     */
+    private static long[] buildSeparatorBits() {
+        long[] bits = new long[2];
+        for (int i = 0; i < SEPARATORS.length(); ++i) {
+            char c = SEPARATORS.charAt(i);
+            assert c < 128;
+            bits[c >>> 6] |= 1L << c;
+        }
+        return bits;
+    }
+
+    /**
+     * Chiffrage complet de message : décalage global aléatoire puis décalage
+     *  mot à mot, en un seul parcours.
+     * Deux décalages circulaires se composent en un seul : chaque mot est
+     *  donc décalé une seule fois, de sa longueur plus le décalage global,
+     *  à l'aide des tables précalculées de SubstCipher.
+     * Au-delà de threshold caractères, le parcours est parallèle. Les
+     *  lettres accentuées sont repliées et décalées si foldAccents.
+     * @pre <pre>
+     *     message != null
+     *     threshold > 0 </pre>
+     * @post <pre>
+     *     Let g ::= un décalage tiré au hasard, 0 < g < ALPHABET_SIZE
+     *         m ::= message décalé de g
+     *     result est l'encodage mot à mot de m </pre>
+     */
+    private static String encipher(String message, int threshold,
+            boolean foldAccents) {
+        assert message != null && threshold > 0;
+        char[] text = message.toCharArray();
+        transformWords(text, ENCODE, alea(1, ALPHABET_SIZE - 1), threshold,
+                foldAccents);
+        return new String(text);
+    }
+
+    /**
+     * Déchiffrage complet de message : annulation de l'étape mot à mot puis
+     *  de l'étape globale, en deux parcours seulement.
+     * Le premier parcours construit l'histogramme des lettres du message
+     *  intermédiaire (celui qu'on obtiendrait en annulant l'étape mot à mot)
+     *  sans le calculer, et en déduit le décalage global ; le second décale
+     *  chaque mot d'une seule fois de sa longueur plus ce décalage global.
+     * Au-delà de threshold caractères, le second parcours est parallèle.
+     *  Les lettres accentuées sont repliées, comptées et décalées si
+     *  foldAccents.
+     * @pre <pre>
+     *     message != null
+     *     threshold > 0 </pre>
+     * @post <pre>
+     *     Let m ::= le décodage mot à mot de message
+     *     result est m décalé de -SubstCipher.guessShiftFrom(m, foldAccents)
+     * </pre>
+     */
+    private static String decipher(String message, int threshold,
+            boolean foldAccents) {
+        assert message != null && threshold > 0;
+        char[] text = message.toCharArray();
+        int offset = guessGlobalShift(text, 0, text.length,
+                new int[GUESS_SCRATCH_SIZE], foldAccents);
+        transformWords(text, DECODE, offset, threshold, foldAccents);
+        return new String(text);
+    }
+
+    /**
+     * Vérifie les bornes d'un lot de messages de src à ranger dans dst, et
+     *  retourne l'indice de fin du dernier message.
+     * @throws IllegalArgumentException si offsets ne délimite pas des
+     *  messages de src ou si dst est trop court
+     */
+    private static int checkBatch(char[] src, int[] offsets, char[] dst) {
+        MessageBatch.checkOffsets(offsets, src.length);
+        int end = offsets[offsets.length - 1];
+        if (end > dst.length) {
+            throw new IllegalArgumentException("arène de sortie trop courte");
+        }
+        return end;
+    }
+
+    /**
+     * Le décalage global (dans [0, ALPHABET_SIZE[) de l'étape globale du
+     *  chiffrement ayant produit text[from..to[, deviné comme le ferait
+     *  SubstCipher.guessShiftFrom(String, boolean) sur le décodage mot à mot
+     *  de ce texte.
+     * Chaque lettre est comptée dans une table indexée par la longueur de son
+     *  mot (modulo ALPHABET_SIZE) et par son rang ; cette table est repliée
+     *  en fin de parcours en un histogramme du texte intermédiaire, une lettre
+     *  de rang r d'un mot de longueur l y ayant le rang r - l.
+     * La table et l'histogramme sont rangés dans counts, réutilisable d'un
+     *  appel à l'autre : counts[l * ALPHABET_SIZE + r] pour la table,
+     *  counts[ALPHABET_SIZE * ALPHABET_SIZE + r] pour l'histogramme.
+     * Si foldAccents, les lettres accentuées sont comptées comme leur lettre
+     *  de base.
+     * @pre <pre>
+     *     text != null
+     *     0 <= from <= to <= text.length
+     *     counts.length == GUESS_SCRATCH_SIZE </pre>
+     * @post <pre>
+     *     0 <= result < ALPHABET_SIZE </pre>
+     */
+    private static int guessGlobalShift(char[] text, int from, int to,
+            int[] counts, boolean foldAccents) {
+        assert text != null;
+        assert 0 <= from && from <= to && to <= text.length;
+        assert counts.length == GUESS_SCRATCH_SIZE;
+        Arrays.fill(counts, 0);
+        int start = from;
+        for (int i = from; i <= to; ++i) {
+            if (i == to || isSeparator(text[i])) {
+                int row = (i - start) % ALPHABET_SIZE * ALPHABET_SIZE;
+                for (int j = start; j < i; ++j) {
+                    char c = text[j];
+                    if (SubstCipher.isNonAccentedLetter(c)) {
+                        counts[row + (c | 0x20) - 'a'] += 1;
+                    } else if (foldAccents) {
+                        int rank = AccentFolding.letterRank(c);
+                        if (rank >= 0) {
+                            counts[row + rank] += 1;
+                        }
+                    }
+                }
+                start = i + 1;
+            }
+        }
+        int histogram = ALPHABET_SIZE * ALPHABET_SIZE;
+        for (int length = 0; length < ALPHABET_SIZE; ++length) {
+            for (int r = 0; r < ALPHABET_SIZE; ++r) {
+                counts[histogram
+                        + (r - length + ALPHABET_SIZE) % ALPHABET_SIZE] +=
+                        counts[length * ALPHABET_SIZE + r];
+            }
+        }
+        int m = 0;
+        for (int r = 1; r < ALPHABET_SIZE; ++r) {
+            if (counts[histogram + r] > counts[histogram + m]) {
+                m = r;
+            }
+        }
+        int shift = m - (SubstCipher.MOST_FREQUENT_CHAR - 'A');
+        return (shift + ALPHABET_SIZE) % ALPHABET_SIZE;
+    }
+
+    /**
+     * Encodage mot à mot (selon type), sur place, de tout text avec le
+     *  décalage supplémentaire offset. Au-delà de threshold caractères, text
+     *  est découpé sur des séparateurs et transformé en parallèle.
      * @pre <pre>
-     *     word != null </pre>
+     *     text != null
+     *     0 <= offset < ALPHABET_SIZE
+     *     threshold > 0 </pre>
      * @post <pre>
-     *     result <==>
-     *         word.length() == 1
-     *         word.charAt(0) est dans SEPARATORS </pre>
+     *     text est transformé comme par transformWords(text, 0, text.length,
+     *         type, offset, foldAccents) </pre>
+     */
+    private static void transformWords(char[] text, int type, int offset,
+            int threshold, boolean foldAccents) {
+        if (text.length > threshold) {
+            ForkJoinPool.commonPool().invoke(new WordsTask(text, 0,
+                    text.length, type, offset, threshold, foldAccents));
+        } else {
+            transformWords(text, 0, text.length, type, offset, foldAccents);
+        }
+    }
+
+    /**
+     * Encodage mot à mot (selon type), sur place, des caractères de text
+     *  compris entre from (inclus) et to (exclu), chaque mot étant décalé de
+     *  sa longueur augmentée de offset (modulo ALPHABET_SIZE) par
+     *  CaesarCodec.of(shift, foldAccents).
+     * Un décalage circulaire de offset suivi d'un décalage de la longueur du
+     *  mot est un décalage unique de leur somme : offset permet donc de
+     *  fusionner l'étape globale du chiffrement avec l'étape mot à mot.
+     * Le texte est parcouru une seule fois : les mots sont délimités par
+     *  indices et décalés dès que le séparateur qui les termine est atteint,
+     *  sans créer de chaîne par mot ni par séparateur.
+     * @pre <pre>
+     *     text != null
+     *     0 <= from <= to <= text.length
+     *     0 <= offset < ALPHABET_SIZE </pre>
+     * @post <pre>
+     *     type == ENCODE
+     *         ==> text[from..to[ est l'encodage de old text[from..to[
+     *             mot à mot, chaque mot étant d'abord décalé de offset
+     *     type == DECODE
+     *         ==> text[from..to[ est le décodage de old text[from..to[
+     *             mot à mot, chaque mot étant ensuite décalé de -offset
+     * </pre>
+     */
+    private static void transformWords(char[] text, int from, int to,
+            int type, int offset, boolean foldAccents) {
+        assert text != null;
+        assert 0 <= from && from <= to && to <= text.length;
+        assert 0 <= offset && offset < ALPHABET_SIZE;
+        int start = from;
+        for (int i = from; i <= to; ++i) {
+            if (i == to || isSeparator(text[i])) {
+                if (i > start) {
+                    int shift = (i - start + offset) % ALPHABET_SIZE;
+                    if (type == DECODE) {
+                        shift = -shift;
+                    }
+                    CaesarCodec.of(shift, foldAccents).encode(text, start,
+                            text, start, i - start);
+                }
+                start = i + 1;
+            }
+        }
+    }
+
+    /**
+     * Transformation mot à mot (selon type) du flux in vers le flux out.
+     * Seuls les caractères précédant le dernier séparateur du tampon sont
+     *  transformés et écrits ; le mot éventuellement coupé en fin de tampon
+     *  est reporté en tête du tampon pour la lecture suivante. Le tampon
+     *  n'est agrandi que lorsqu'un mot ne tient pas dedans.
+     * @pre <pre>
+     *     in != null && out != null </pre>
      */
-    private static boolean isSeparator(String word) {
-        assert (word != null);
+    private static void transformStream(Reader in, Writer out, int type)
+            throws IOException {
+        if (in == null || out == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        char[] buffer = new char[BUFFER_SIZE];
+        int pending = 0;
+        int n = in.read(buffer, pending, buffer.length - pending);
+        while (n != -1) {
+            int end = pending + n;
+            int cut = end;
+            while (cut > 0 && !isSeparator(buffer[cut - 1])) {
+                cut -= 1;
+            }
+            if (cut > 0) {
+                transformWords(buffer, 0, cut, type, 0, false);
+                out.write(buffer, 0, cut);
+                System.arraycopy(buffer, cut, buffer, 0, end - cut);
+            }
+            pending = end - cut;
+            if (pending == buffer.length) {
+                buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+            }
+            n = in.read(buffer, pending, buffer.length - pending);
+        }
+        transformWords(buffer, 0, pending, type, 0, false);
+        out.write(buffer, 0, pending);
+        out.flush();
+    }
 
-        return word.length() == 1 && SEPARATORS.indexOf(word.charAt(0)) != -1;
+    /**
+     * Transformation mot à mot (selon type) du fichier source vers le fichier
+     *  target, par fenêtres projetées en mémoire.
+     * Chaque fenêtre est réduite pour se terminer juste après son dernier
+     *  séparateur (sauf en fin de fichier) ; si elle n'en contient aucun,
+     *  elle est agrandie jusqu'à en contenir un.
+     * @pre <pre>
+     *     source != null && target != null </pre>
+     * @throws IOException si source contient un mot de plus de
+     *  Integer.MAX_VALUE octets, qu'aucune fenêtre ne peut contenir
+     */
+    private static void transformFile(Path source, Path target, int type)
+            throws IOException {
+        if (source == null || target == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(target,
+                        StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long pos = 0;
+            int window = MAP_WINDOW_SIZE;
+            while (pos < size) {
+                int length = (int) Math.min(window, size - pos);
+                MappedByteBuffer src =
+                        in.map(FileChannel.MapMode.READ_ONLY, pos, length);
+                int cut = length;
+                if (pos + length < size) {
+                    while (cut > 0 && !isSeparator(src.get(cut - 1))) {
+                        cut -= 1;
+                    }
+                }
+                if (cut == 0) {
+                    if (window == Integer.MAX_VALUE) {
+                        throw new IOException(source + " : mot de plus de "
+                                + Integer.MAX_VALUE + " octets à la position "
+                                + pos);
+                    }
+                    window = (int) Math.min(2L * window, Integer.MAX_VALUE);
+                } else {
+                    MappedByteBuffer dst =
+                            out.map(FileChannel.MapMode.READ_WRITE, pos, cut);
+                    transformWords(src, dst, cut, type);
+                    pos += cut;
+                    window = MAP_WINDOW_SIZE;
+                }
+            }
+        }
     }
 
     /**
-     * Encodage mot à mot de message avec un décalage donné par la longueur
-     *  des mots (décalage à droite si type == ENCODE, décalage à gauche si
-     *  type == DECODE).
+     * Encodage mot à mot (selon type) des length premiers octets de src,
+     *  rangés aux mêmes indices dans dst. Les positions et limites des deux
+     *  tampons sont utilisées comme curseurs.
      * @pre <pre>
-     *     message != null </pre>
+     *     src != null && dst != null
+     *     0 <= length <= src.capacity() && length <= dst.capacity() </pre>
      * @post <pre>
      *     type == ENCODE
-     *         ==> result est l'encodage de message mot à mot
+     *         ==> dst[0..length[ est l'encodage de src[0..length[ mot à mot
      *     type == DECODE
-     *         ==> result est le décodage de message mot à mot </pre>
+     *         ==> dst[0..length[ est le décodage de src[0..length[ mot à mot
+     * </pre>
      */
-    private static String transformWords(String message, int type) {
-        assert message != null;
+    private static void transformWords(ByteBuffer src, ByteBuffer dst,
+            int length, int type) {
+        assert src != null && dst != null;
         SubstCipher t = new SubstCipher();
-        StringTokenizer s = new StringTokenizer(message, SEPARATORS, true);
-        StringBuffer res = new StringBuffer("");
-        while (s.hasMoreTokens()){
-          String currentWord = s.nextToken();
-          if(!isSeparator(currentWord)){
-             int length = currentWord.length() % ALPHABET_SIZE;
-             t.setShift(length);
-             if(type == ENCODE){
-                 t.ensurePositiveShift();
-             }  else {
-                 t.ensureNegativeShift();
-             }
-             t.buildShiftedTextFor(currentWord);
-             currentWord = t.getLastShiftedText();
-          }
-          res.append(currentWord);
-        }
-        return new String(res);
+        int start = 0;
+        for (int i = 0; i <= length; ++i) {
+            if (i == length || isSeparator(src.get(i))) {
+                if (i > start) {
+                    int wordLength = (i - start) % ALPHABET_SIZE;
+                    t.setShift(type == ENCODE ? wordLength : -wordLength);
+                    src.limit(i).position(start);
+                    dst.position(start);
+                    t.buildShiftedTextFor(src, dst);
+                    src.limit(src.capacity());
+                }
+                if (i < length) {
+                    dst.put(i, src.get(i));
+                }
+                start = i + 1;
+            }
+        }
+    }
+
+    /**
+     * indique si l'octet b (ASCII ou ISO-8859-1) est un séparateur.
+     * @post <pre>
+     *     result <==> (char) b est dans SEPARATORS </pre>
+     */
+    private static boolean isSeparator(byte b) {
+        return b >= 0 && isSeparator((char) b);
+    }
+
+    /**
+     * Un indice de séparateur de text proche du milieu de [from, to[,
+     *  ou -1 si cet intervalle ne contient aucun séparateur après from.
+     * Couper en cet indice laisse chaque mot entier d'un seul côté.
+     * @pre <pre>
+     *     text != null
+     *     0 <= from < to <= text.length </pre>
+     * @post <pre>
+     *     result == -1 || (from < result < to && isSeparator(text[result]))
+     * </pre>
+     */
+    private static int splitPoint(char[] text, int from, int to) {
+        int middle = (from + to) >>> 1;
+        for (int i = middle; i < to; ++i) {
+            if (isSeparator(text[i])) {
+                return i;
+            }
+        }
+        for (int i = middle - 1; i > from; --i) {
+            if (isSeparator(text[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Une tâche de transformation mot à mot, sur place, de text[from..to[,
+     *  divisée récursivement en deux sur un séparateur tant que sa taille
+     *  dépasse threshold. Les sous-tâches travaillent sur des intervalles
+     *  disjoints du même tableau : aucune concaténation n'est nécessaire.
+     */
+    private static final class WordsTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final char[] text;
+        private final int from;
+        private final int to;
+        private final int type;
+        private final int offset;
+        private final int threshold;
+        private final boolean foldAccents;
+
+        WordsTask(char[] text, int from, int to, int type, int offset,
+                int threshold, boolean foldAccents) {
+            this.text = text;
+            this.from = from;
+            this.to = to;
+            this.type = type;
+            this.offset = offset;
+            this.threshold = threshold;
+            this.foldAccents = foldAccents;
+        }
+
+        @Override
+        protected void compute() {
+            int split = to - from > threshold ? splitPoint(text, from, to) : -1;
+            if (split == -1) {
+                transformWords(text, from, to, type, offset,
+                        foldAccents);
+            } else {
+                invokeAll(new WordsTask(text, from, split, type, offset,
+                                threshold, foldAccents),
+                        new WordsTask(text, split, to, type, offset,
+                                threshold, foldAccents));
+            }
+        }
     }
 
     // TESTS
@@ -226,5 +944,10 @@ public class Cipher {
         // un exemple qui ne donne pas le bon résultat !
         c.setCipherText("Cvj zkxvl xqqxnrbkq gri zanneèna !");
         System.out.println(c);
+        // avec repli des accents, le 'è' est chiffré lui aussi
+        c.setAccentFolding(true);
+        c.setClearText(clear);
+        c.setCipherText(c.getCipherText());
+        System.out.println(c);
     }
 }
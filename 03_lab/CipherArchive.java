@@ -0,0 +1,403 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Une archive chiffrée découpée en morceaux, dont n'importe quelle plage
+ *  peut être déchiffrée sans lire ni transformer le reste de l'archive.
+ * Le texte est chiffré par la seule étape mot à mot (Cipher.encodeWords)
+ *  et découpé en morceaux d'environ getChunkSize() caractères, chacun se
+ *  terminant par un séparateur : aucun mot n'est coupé entre deux morceaux,
+ *  de sorte que chaque morceau se déchiffre indépendamment des autres.
+ *  Sans décalage global, ce déchiffrement n'a rien à deviner et reste exact
+ *  pour un morceau aussi court soit-il ; en contrepartie, le contenu de
+ *  l'archive n'est pas un chiffré au sens de Cipher.getCipherText. Un index en fin de
+ *  fichier donne, pour chaque morceau, sa position dans le fichier et celle
+ *  de son premier caractère dans le texte.
+ * Le format du fichier (entiers gros-boutistes, morceaux en UTF-8) est :
+ * <pre>
+ *     en-tête : int MAGIC, int VERSION, int taille des morceaux
+ *     morceaux chiffrés, bout à bout
+ *     index   : int n, puis n + 1 couples (long octet, long caractère)
+ *               donnant le début de chaque morceau et la fin du dernier
+ *     fin     : long position de l'index, int MAGIC </pre>
+ * Une archive ouverte peut être lue simultanément par plusieurs threads.
+ * @inv <pre>
+ *     getChunkSize() > 0
+ *     getChunkCount() >= 0
+ *     getLength() >= 0 </pre>
+ */
+public final class CipherArchive implements Closeable {
+
+    // ATTRIBUTS STATIQUES
+
+    /**
+     * Nombre magique en tête et en fin des archives ("CCHK").
+     */
+    public static final int MAGIC = 0x4343484B;
+
+    /**
+     * Version du format des archives.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Taille (en caractères) des morceaux par défaut.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+    /**
+     * Taille (en octets) de l'en-tête.
+     */
+    private static final int HEADER_SIZE = 12;
+
+    /**
+     * Taille (en octets) de la fin d'archive.
+     */
+    private static final int TRAILER_SIZE = 12;
+
+    /**
+     * Taille (en octets) d'une entrée de l'index.
+     */
+    private static final int ENTRY_SIZE = 16;
+
+    // ATTRIBUTS
+
+    /**
+     * Le canal de lecture de l'archive.
+     */
+    private final FileChannel channel;
+
+    /**
+     * La taille (en caractères) visée pour les morceaux.
+     */
+    private final int chunkSize;
+
+    /**
+     * byteOffsets[i] est la position dans le fichier du i-ème morceau ;
+     *  byteOffsets[getChunkCount()] est la fin du dernier.
+     */
+    private final long[] byteOffsets;
+
+    /**
+     * charOffsets[i] est la position dans le texte du premier caractère du
+     *  i-ème morceau ; charOffsets[getChunkCount()] == getLength().
+     */
+    private final long[] charOffsets;
+
+    // CONSTRUCTEURS
+
+    private CipherArchive(FileChannel channel, int chunkSize,
+            long[] byteOffsets, long[] charOffsets) {
+        this.channel = channel;
+        this.chunkSize = chunkSize;
+        this.byteOffsets = byteOffsets;
+        this.charOffsets = charOffsets;
+    }
+
+    /**
+     * L'archive contenue dans le fichier file, ouverte en lecture. Seuls
+     *  l'en-tête et l'index sont lus.
+     * @pre <pre>
+     *     file != null </pre>
+     * @throws IOException si le fichier ne peut être lu ou n'est pas une
+     *  archive valide
+     */
+    public static CipherArchive open(Path file) throws IOException {
+        if (file == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HEADER_SIZE + 4 + ENTRY_SIZE + TRAILER_SIZE) {
+                throw new IOException(file + " : archive tronquée");
+            }
+            ByteBuffer header = read(channel, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException(file + " n'est pas une archive chiffrée");
+            }
+            int chunkSize = header.getInt();
+            if (chunkSize <= 0) {
+                throw new IOException(file + " n'est pas une archive chiffrée");
+            }
+            ByteBuffer trailer = read(channel, size - TRAILER_SIZE,
+                    TRAILER_SIZE);
+            long indexOffset = trailer.getLong();
+            if (trailer.getInt() != MAGIC || indexOffset < HEADER_SIZE
+                    || indexOffset > size - TRAILER_SIZE - 4 - ENTRY_SIZE) {
+                throw new IOException(file + " : index introuvable");
+            }
+            ByteBuffer index = read(channel, indexOffset,
+                    (int) (size - TRAILER_SIZE - indexOffset));
+            int count = index.getInt();
+            if (count < 0 || index.remaining() != (count + 1L) * ENTRY_SIZE) {
+                throw new IOException(file + " : index invalide");
+            }
+            long[] byteOffsets = new long[count + 1];
+            long[] charOffsets = new long[count + 1];
+            for (int i = 0; i <= count; ++i) {
+                byteOffsets[i] = index.getLong();
+                charOffsets[i] = index.getLong();
+                if (i == 0 ? byteOffsets[0] != HEADER_SIZE || charOffsets[0] != 0
+                        : byteOffsets[i] <= byteOffsets[i - 1]
+                                || charOffsets[i] <= charOffsets[i - 1]) {
+                    throw new IOException(file + " : index invalide");
+                }
+            }
+            if (byteOffsets[count] != indexOffset) {
+                throw new IOException(file + " : index invalide");
+            }
+            return new CipherArchive(channel, chunkSize, byteOffsets,
+                    charOffsets);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // REQUETES
+
+    /**
+     * La taille (en caractères) visée pour les morceaux de cette archive.
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Le nombre de morceaux de cette archive.
+     */
+    public int getChunkCount() {
+        return byteOffsets.length - 1;
+    }
+
+    /**
+     * Le nombre de caractères du texte de cette archive.
+     */
+    public long getLength() {
+        return charOffsets[charOffsets.length - 1];
+    }
+
+    /**
+     * Le texte en clair compris entre les caractères from (inclus) et to
+     *  (exclu) du texte de cette archive.
+     * Seuls les morceaux recouvrant cette plage sont lus et déchiffrés.
+     * @pre <pre>
+     *     0 <= from <= to <= getLength()
+     *     to - from <= Integer.MAX_VALUE </pre>
+     * @post <pre>
+     *     result.length() == to - from </pre>
+     */
+    public String decrypt(long from, long to) throws IOException {
+        if (from < 0 || from > to || to > getLength()) {
+            throw new IllegalArgumentException("plage invalide");
+        }
+        if (from == to) {
+            return "";
+        }
+        int first = chunkOf(from);
+        int last = chunkOf(to - 1);
+        long start = byteOffsets[first];
+        long end = byteOffsets[last + 1];
+        if (end - start > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("plage trop grande");
+        }
+        CharBuffer chars =
+                StandardCharsets.UTF_8.decode(read(channel, start,
+                        (int) (end - start)));
+        char[] text = chars.array();
+        int offset = chars.arrayOffset() + chars.position();
+        Cipher.decodeWords(text, offset, offset + chars.remaining());
+        return new String(text, offset + (int) (from - charOffsets[first]),
+                (int) (to - from));
+    }
+
+    // COMMANDES
+
+    /**
+     * Ferme cette archive.
+     */
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Écrit dans le fichier target (créé ou écrasé) l'archive chiffrée du
+     *  texte lu sur in (qui n'est pas fermé), en morceaux d'environ
+     *  chunkSize caractères. Un morceau n'est plus long que chunkSize que
+     *  s'il contient un mot plus long que chunkSize.
+     * La mémoire utilisée est bornée par chunkSize et la longueur du plus
+     *  long mot rencontré, quelle que soit la taille du texte.
+     * @pre <pre>
+     *     in != null && target != null
+     *     chunkSize > 0 </pre>
+     * @post <pre>
+     *     open(target) est une archive de chunkSize dont le déchiffré
+     *         complet est le texte lu sur in </pre>
+     */
+    public static void write(Reader in, Path target, int chunkSize)
+            throws IOException {
+        if (in == null || target == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException(
+                    "La taille des morceaux doit être strictement positive");
+        }
+        try (FileChannel out = FileChannel.open(target,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(out, ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC)
+                    .putInt(VERSION).putInt(chunkSize).flip());
+            long[] byteOffsets = new long[16];
+            long[] charOffsets = new long[16];
+            int count = 0;
+            long bytePos = HEADER_SIZE;
+            long charPos = 0;
+            char[] buffer = new char[chunkSize];
+            int pending = 0;
+            boolean eof = false;
+            while (true) {
+                while (!eof && pending < buffer.length) {
+                    int n = in.read(buffer, pending, buffer.length - pending);
+                    if (n < 0) {
+                        eof = true;
+                    } else {
+                        pending += n;
+                    }
+                }
+                if (pending == 0) {
+                    break;
+                }
+                int cut = eof ? pending : lastSeparator(buffer, pending) + 1;
+                if (cut == 0) {
+                    buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+                    continue;
+                }
+                if (count + 1 >= byteOffsets.length) {
+                    byteOffsets = Arrays.copyOf(byteOffsets, 2 * count);
+                    charOffsets = Arrays.copyOf(charOffsets, 2 * count);
+                }
+                byteOffsets[count] = bytePos;
+                charOffsets[count] = charPos;
+                count += 1;
+                Cipher.encodeWords(buffer, 0, cut);
+                ByteBuffer bytes = StandardCharsets.UTF_8.encode(
+                        CharBuffer.wrap(buffer, 0, cut));
+                bytePos += bytes.remaining();
+                charPos += cut;
+                write(out, bytes);
+                pending -= cut;
+                System.arraycopy(buffer, cut, buffer, 0, pending);
+                if (buffer.length > chunkSize && pending <= chunkSize) {
+                    buffer = Arrays.copyOf(buffer, chunkSize);
+                }
+            }
+            byteOffsets[count] = bytePos;
+            charOffsets[count] = charPos;
+            ByteBuffer index = ByteBuffer.allocate(
+                    4 + (count + 1) * ENTRY_SIZE + TRAILER_SIZE);
+            index.putInt(count);
+            for (int i = 0; i <= count; ++i) {
+                index.putLong(byteOffsets[i]).putLong(charOffsets[i]);
+            }
+            index.putLong(bytePos).putInt(MAGIC).flip();
+            write(out, index);
+        }
+    }
+
+    // OUTILS
+
+    /**
+     * Une représentation sous forme de chaîne de cette archive.
+     * @post
+     *     result.equals("CipherArchive[length:" + getLength()
+     *         + ";chunks:" + getChunkCount() + "]")
+     */
+    public String toString() {
+        return "CipherArchive[length:" + getLength() + ";chunks:"
+                + getChunkCount() + "]";
+    }
+
+    /**
+     * Le numéro du morceau contenant le caractère position du texte.
+     * @pre <pre>
+     *     0 <= position < getLength() </pre>
+     */
+    private int chunkOf(long position) {
+        int i = Arrays.binarySearch(charOffsets, 0, getChunkCount(), position);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    /**
+     * L'indice du dernier séparateur de buffer[0..length[, -1 s'il n'y en
+     *  a pas.
+     */
+    private static int lastSeparator(char[] buffer, int length) {
+        for (int i = length - 1; i >= 0; --i) {
+            if (Cipher.isSeparator(buffer[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Les length octets de channel à partir de la position position, dans
+     *  un tampon prêt à être lu.
+     * @throws IOException si le fichier se termine avant
+     */
+    private static ByteBuffer read(FileChannel channel, long position,
+            int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("fin de fichier inattendue");
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Écrit tous les octets restants de buffer sur channel.
+     */
+    private static void write(FileChannel channel, ByteBuffer buffer)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // TESTS
+
+    public static void main(String[] args) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; ++i) {
+            sb.append("Paragraphe ").append(i)
+                    .append(" : les Grecs attaquent par derrière !\n");
+        }
+        String clear = sb.toString();
+        Path file = Files.createTempFile("archive", ".cchk");
+        try {
+            write(new StringReader(clear), file, 1024);
+            try (CipherArchive archive = open(file)) {
+                System.out.println(archive);
+                int from = clear.indexOf("Paragraphe 500 ");
+                int to = clear.indexOf('\n', from) + 1;
+                System.out.print(archive.decrypt(from, to));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
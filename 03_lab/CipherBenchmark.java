@@ -0,0 +1,262 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Un banc d'essai du moteur de chiffrement : SubstCipher.buildShiftedTextFor,
+ *  l'encodage et le décodage mot à mot de Cipher (transformWords, atteint par
+ *  getCipherText et getClearText) et SubstCipher.guessShiftFrom.
+ * L'opération "buildShiftedTextFor (arith.)" mesure, à titre de comparaison,
+ *  l'ancien décalage arithmétique caractère par caractère que les tables de
+ *  translation ont remplacé (voir arithmeticShift) :
+ * <pre>
+ *     java CipherBenchmark 1048576 buildShiftedTextFor </pre>
+ * Chaque opération est mesurée sur des textes de 16 octets à 100 Mo, tirés
+ *  d'un corpus ASCII et d'un corpus français riche en accents. Pour chaque
+ *  mesure sont affichés le nombre d'opérations par seconde, le débit (en
+ *  octets UTF-8 du texte d'entrée) et la mémoire allouée par opération et
+ *  par seconde, tous threads confondus.
+ * Chaque mesure est précédée de WARMUP_ITERATIONS itérations de chauffe ;
+ *  une itération répète l'opération pendant au moins ITERATION_TIME.
+ * Les grandes tailles demandent un tas confortable :
+ * <pre>
+ *     java -Xmx4g CipherBenchmark [tailleMax [filtre]] </pre>
+ *  où tailleMax borne la taille des textes (100 000 000 par défaut) et
+ *  filtre ne garde que les opérations dont le nom le contient.
+ */
+public final class CipherBenchmark {
+
+    // ATTRIBUTS STATIQUES
+
+    /**
+     * Les tailles (en caractères) des textes mesurés.
+     */
+    private static final int[] SIZES = {
+        16, 1 << 10, 1 << 16, 1 << 20, 16 << 20, 100_000_000
+    };
+
+    /**
+     * Nombre d'itérations de chauffe avant chaque mesure.
+     */
+    private static final int WARMUP_ITERATIONS = 2;
+
+    /**
+     * Nombre d'itérations mesurées.
+     */
+    private static final int MEASURE_ITERATIONS = 3;
+
+    /**
+     * Durée minimale (en nanosecondes) d'une itération.
+     */
+    private static final long ITERATION_TIME = 300_000_000L;
+
+    /**
+     * Les mots du corpus ASCII.
+     */
+    private static final String[] ASCII_WORDS = {
+        "the", "Greeks", "attack", "from", "behind", "and", "we", "must",
+        "hold", "the", "gate", "until", "dawn", "while", "scouts", "watch",
+        "every", "road", "leading", "to", "city", "walls", "are", "strong"
+    };
+
+    /**
+     * Les mots du corpus français, riche en lettres accentuées.
+     */
+    private static final String[] FRENCH_WORDS = {
+        "les", "Grecs", "attaquent", "par", "derrière", "à", "l'aube", "été",
+        "élève", "où", "français", "garçon", "château", "Noël", "naïve",
+        "déjà", "très", "être", "forêt", "Hélène", "fenêtre", "théâtre",
+        "événement", "hôpital", "île", "préféré", "sûr", "gîte", "à", "et"
+    };
+
+    /**
+     * Les séparateurs placés entre les mots des corpus.
+     */
+    private static final String[] SEPARATORS = {
+        " ", " ", " ", " ", " ", ", ", ". ", " ! ", " ? ", "\n", " (", ") "
+    };
+
+    /**
+     * Puits des résultats, pour que les opérations mesurées ne soient pas
+     *  éliminées par le compilateur.
+     */
+    private static long sink;
+
+    // CONSTRUCTEURS
+
+    private CipherBenchmark() {
+        // classe utilitaire
+    }
+
+    // OUTILS
+
+    /**
+     * Une opération mesurée sur un texte donné, dont le résultat est versé
+     *  dans sink.
+     */
+    private interface Operation {
+        long run(String text, String cipherText);
+    }
+
+    /**
+     * Un texte de size caractères formé de mots de words tirés au hasard
+     *  (avec une graine fixe) et séparés par des SEPARATORS.
+     * @pre <pre>
+     *     words != null && words.length > 0
+     *     size >= 0 </pre>
+     * @post <pre>
+     *     result.length() == size </pre>
+     */
+    private static String corpus(String[] words, int size) {
+        Random random = new Random(size);
+        StringBuilder sb = new StringBuilder(size + 32);
+        while (sb.length() < size) {
+            sb.append(words[random.nextInt(words.length)]);
+            sb.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+        }
+        sb.setLength(size);
+        return sb.toString();
+    }
+
+    /**
+     * Le texte text décalé circulairement de shift positions, calculé comme
+     *  le faisait SubstCipher.buildShiftedTextFor avant ses tables de
+     *  translation : un test de lettre, un test de casse et un modulo par
+     *  caractère, accumulés dans un StringBuilder.
+     * @pre <pre>
+     *     text != null
+     *     -SubstCipher.ALPHABET_SIZE < shift < SubstCipher.ALPHABET_SIZE
+     * </pre>
+     * @post <pre>
+     *     result.equals(le texte décalé par new SubstCipher(shift)) </pre>
+     */
+    private static String arithmeticShift(String text, int shift) {
+        int alphabetSize = SubstCipher.ALPHABET_SIZE;
+        StringBuilder result = new StringBuilder();
+        for (char c : text.toCharArray()) {
+            if (SubstCipher.isNonAccentedLetter(c)) {
+                char base = Character.isUpperCase(c) ? 'A' : 'a';
+                c = (char) (base
+                        + (c - base + shift + alphabetSize) % alphabetSize);
+            }
+            result.append(c);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Le nombre total d'octets alloués jusqu'ici par les threads vivants, ou
+     *  -1 si la machine virtuelle ne sait pas le mesurer.
+     */
+    private static long allocatedBytes(ThreadMXBean threads) {
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean t =
+                (com.sun.management.ThreadMXBean) threads;
+        if (!t.isThreadAllocatedMemorySupported()
+                || !t.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long total = 0;
+        for (long bytes : t.getThreadAllocatedBytes(t.getAllThreadIds())) {
+            if (bytes > 0) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Mesure op sur text (de chiffré cipherText et de bytes octets UTF-8) et
+     *  affiche le résultat sur une ligne.
+     */
+    private static void measure(String name, String corpusName,
+            Operation op, String text, String cipherText, long bytes) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long ops = 0;
+        long time = 0;
+        long allocated = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS + MEASURE_ITERATIONS; ++i) {
+            long n = 0;
+            long startAlloc = allocatedBytes(threads);
+            long start = System.nanoTime();
+            long end;
+            do {
+                sink += op.run(text, cipherText);
+                n += 1;
+                end = System.nanoTime();
+            } while (end - start < ITERATION_TIME);
+            long endAlloc = allocatedBytes(threads);
+            if (i >= WARMUP_ITERATIONS) {
+                ops += n;
+                time += end - start;
+                allocated = startAlloc < 0 || allocated < 0
+                        ? -1 : allocated + endAlloc - startAlloc;
+            }
+        }
+        double seconds = time / 1e9;
+        System.out.printf("%-28s %-9s %11d %14.1f %12.1f %14s %10s%n",
+                name, corpusName, text.length(), ops / seconds,
+                bytes * ops / seconds / 1e6,
+                allocated < 0 ? "?" : String.format("%.0f",
+                        (double) allocated / ops),
+                allocated < 0 ? "?" : String.format("%.1f",
+                        allocated / seconds / 1e6));
+    }
+
+    // TESTS
+
+    public static void main(String[] args) {
+        long maxSize = args.length > 0 ? Long.parseLong(args[0]) : Long.MAX_VALUE;
+        String filter = args.length > 1 ? args[1] : "";
+        String[] names = {
+            "buildShiftedTextFor", "buildShiftedTextFor (arith.)", "encode",
+            "decode", "guessShiftFrom"
+        };
+        Operation[] operations = {
+            (text, cipherText) -> {
+                SubstCipher s = new SubstCipher(3);
+                s.buildShiftedTextFor(text);
+                return s.getLastShiftedText().length();
+            },
+            (text, cipherText) -> arithmeticShift(text, 3).length(),
+            (text, cipherText) -> {
+                Cipher c = new Cipher();
+                c.setClearText(text);
+                return c.getCipherText().length();
+            },
+            (text, cipherText) -> {
+                Cipher c = new Cipher();
+                c.setCipherText(cipherText);
+                return c.getClearText().length();
+            },
+            (text, cipherText) -> SubstCipher.guessShiftFrom(cipherText)
+        };
+        String[] corpusNames = {"ascii", "français"};
+        String[][] corpora = {ASCII_WORDS, FRENCH_WORDS};
+        System.out.printf("%-28s %-9s %11s %14s %12s %14s %10s%n",
+                "opération", "corpus", "taille", "ops/s", "Mo/s",
+                "alloué o/op", "alloc Mo/s");
+        for (int size : SIZES) {
+            if (size > maxSize) {
+                break;
+            }
+            for (int k = 0; k < corpora.length; ++k) {
+                String text = corpus(corpora[k], size);
+                Cipher c = new Cipher();
+                c.setClearText(text);
+                String cipherText = c.getCipherText();
+                long bytes = text.getBytes(StandardCharsets.UTF_8).length;
+                for (int i = 0; i < operations.length; ++i) {
+                    if (names[i].contains(filter)) {
+                        measure(names[i], corpusNames[k], operations[i],
+                                text, cipherText, bytes);
+                    }
+                }
+            }
+        }
+        System.out.println("(puits : " + sink + ")");
+    }
+}
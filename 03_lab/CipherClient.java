@@ -0,0 +1,307 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Un client de CipherServer, sur une connexion TCP.
+ * Les méthodes encodeAll et decodeAll envoient leurs requêtes sans attendre
+ *  les réponses, dans la limite d'une fenêtre : tant que les requêtes sans
+ *  réponse dépassent getWindowSize() octets, la réponse la plus ancienne
+ *  est lue avant d'envoyer la suivante. Les réponses en attente tiennent
+ *  ainsi dans le tampon de réception de la connexion, et le serveur n'est
+ *  jamais bloqué en écriture pendant que le client l'est aussi.
+ * Un client n'est pas partageable entre threads.
+ */
+public final class CipherClient implements Closeable {
+
+    // ATTRIBUTS STATIQUES
+
+    /**
+     * Taille des tampons de lecture et d'écriture.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Taille de l'en-tête d'une trame : l'octet d'opération ou d'état et
+     *  la longueur.
+     */
+    private static final int FRAME_HEADER_SIZE = 5;
+
+    // ATTRIBUTS
+
+    /**
+     * La connexion au serveur.
+     */
+    private final Socket socket;
+
+    /**
+     * Le flux des réponses du serveur.
+     */
+    private final DataInputStream in;
+
+    /**
+     * Le flux des requêtes vers le serveur.
+     */
+    private final DataOutputStream out;
+
+    /**
+     * Nombre maximal d'octets de requêtes sans réponse dans encodeAll et
+     *  decodeAll.
+     */
+    private final int windowSize;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Un client connecté au serveur à l'écoute sur le port port de host.
+     * @pre <pre>
+     *     host != null </pre>
+     */
+    public CipherClient(String host, int port) throws IOException {
+        if (host == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        this.socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(new BufferedInputStream(
+                socket.getInputStream(), BUFFER_SIZE));
+        this.out = new DataOutputStream(new BufferedOutputStream(
+                socket.getOutputStream(), BUFFER_SIZE));
+        this.windowSize = Math.max(BUFFER_SIZE,
+                socket.getReceiveBufferSize() / 2);
+    }
+
+    // REQUETES
+
+    /**
+     * Nombre maximal d'octets (en-têtes compris) de requêtes envoyées sans
+     *  réponse par encodeAll et decodeAll : la moitié du tampon de réception
+     *  de la connexion, le système en réservant une part à sa gestion. Une
+     *  requête plus longue est envoyée seule.
+     * @post <pre>
+     *     result >= 8192 </pre>
+     */
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Le chiffré de text calculé par le serveur.
+     * @pre <pre>
+     *     text != null </pre>
+     * @throws IOException si la connexion échoue ou si le serveur répond
+     *  par une erreur
+     */
+    public String encode(String text) throws IOException {
+        return call(CipherServer.OP_ENCODE, text);
+    }
+
+    /**
+     * Le déchiffré de text calculé par le serveur.
+     * @pre <pre>
+     *     text != null </pre>
+     * @throws IOException si la connexion échoue ou si le serveur répond
+     *  par une erreur
+     */
+    public String decode(String text) throws IOException {
+        return call(CipherServer.OP_DECODE, text);
+    }
+
+    /**
+     * Le décalage de text deviné par le serveur.
+     * @pre <pre>
+     *     text != null </pre>
+     * @throws IOException si la connexion échoue ou si le serveur répond
+     *  par une erreur
+     */
+    public int guessShift(String text) throws IOException {
+        send(CipherServer.OP_GUESS_SHIFT, text);
+        byte[] b = receive();
+        if (b.length != 4) {
+            throw new IOException("réponse invalide");
+        }
+        return (b[0] << 24) | ((b[1] & 0xFF) << 16) | ((b[2] & 0xFF) << 8)
+                | (b[3] & 0xFF);
+    }
+
+    /**
+     * Les chiffrés des messages de texts, dans le même ordre, obtenus en
+     *  envoyant les requêtes sans attendre les réponses, dans la limite de
+     *  getWindowSize().
+     * @pre <pre>
+     *     texts != null </pre>
+     * @throws IOException si la connexion échoue ou si le serveur répond
+     *  par une erreur
+     */
+    public List<String> encodeAll(List<String> texts) throws IOException {
+        return callAll(CipherServer.OP_ENCODE, texts);
+    }
+
+    /**
+     * Les déchiffrés des messages de texts, dans le même ordre, obtenus en
+     *  envoyant les requêtes sans attendre les réponses, dans la limite de
+     *  getWindowSize().
+     * @pre <pre>
+     *     texts != null </pre>
+     * @throws IOException si la connexion échoue ou si le serveur répond
+     *  par une erreur
+     */
+    public List<String> decodeAll(List<String> texts) throws IOException {
+        return callAll(CipherServer.OP_DECODE, texts);
+    }
+
+    // COMMANDES
+
+    /**
+     * Ferme la connexion au serveur.
+     */
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    /**
+     * Envoie (sans vider le tampon d'écriture) une requête d'opération op et
+     *  de texte text.
+     * @pre <pre>
+     *     text != null </pre>
+     */
+    public void send(int op, String text) throws IOException {
+        if (text == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        CipherServer.writeFrame(out, op, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Vide le tampon d'écriture, et attend la prochaine réponse du serveur,
+     *  dont le contenu est retourné.
+     * @throws IOException si la connexion échoue ou si le serveur répond
+     *  par une erreur
+     */
+    public byte[] receive() throws IOException {
+        out.flush();
+        int status = in.readUnsignedByte();
+        int length = in.readInt();
+        if (length < 0 || length > CipherServer.MAX_FRAME_LENGTH) {
+            throw new IOException("réponse invalide");
+        }
+        byte[] payload = CipherServer.readPayload(in, length);
+        if (status != CipherServer.STATUS_OK) {
+            throw new IOException("erreur du serveur : "
+                    + new String(payload, StandardCharsets.UTF_8));
+        }
+        return payload;
+    }
+
+    // OUTILS
+
+    /**
+     * La réponse textuelle à une requête d'opération op et de texte text.
+     */
+    private String call(int op, String text) throws IOException {
+        send(op, text);
+        return new String(receive(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Les réponses textuelles aux requêtes d'opération op et de textes
+     *  texts, envoyées par une fenêtre glissante d'au plus windowSize
+     *  octets : avant d'envoyer une requête qui ferait dépasser la fenêtre,
+     *  les réponses les plus anciennes sont lues (receive vide alors le
+     *  tampon d'écriture). Les réponses d'encodage et de décodage ayant la
+     *  taille de leur requête, celles qui attendent d'être lues tiennent
+     *  dans le tampon de réception.
+     */
+    private List<String> callAll(int op, List<String> texts)
+            throws IOException {
+        if (texts == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        List<String> results = new ArrayList<>(texts.size());
+        int[] sizes = new int[texts.size()];
+        long outstanding = 0;
+        int sent = 0;
+        for (String text : texts) {
+            if (text == null) {
+                throw new AssertionError("la référence est vide");
+            }
+            byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+            int size = FRAME_HEADER_SIZE + payload.length;
+            while (results.size() < sent && outstanding + size > windowSize) {
+                results.add(new String(receive(), StandardCharsets.UTF_8));
+                outstanding -= sizes[results.size() - 1];
+            }
+            CipherServer.writeFrame(out, op, payload);
+            sizes[sent++] = size;
+            outstanding += size;
+        }
+        while (results.size() < sent) {
+            results.add(new String(receive(), StandardCharsets.UTF_8));
+        }
+        return results;
+    }
+
+    // TESTS
+
+    /**
+     * Ouvre args[0] connexions (2000 par défaut) vers un serveur local
+     *  démarré pour l'occasion, puis envoie sur chacune args[1] requêtes
+     *  d'encodage (10 par défaut) avant d'en lire les réponses, et fait
+     *  déchiffrer les chiffrés obtenus de la même façon.
+     */
+    public static void main(String[] args) throws IOException {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        String clear = "Les Grecs attaquent par derriere ! Tenez la porte.";
+        try (CipherServer server = new CipherServer(0)) {
+            server.start();
+            System.out.println("serveur sur le port " + server.getPort()
+                    + (server.usesVirtualThreads() ? " (threads virtuels)"
+                            : " (threads du système)"));
+            List<CipherClient> connections = new ArrayList<>(clients);
+            long start = System.nanoTime();
+            try {
+                for (int i = 0; i < clients; ++i) {
+                    connections.add(new CipherClient("localhost",
+                            server.getPort()));
+                }
+                for (CipherClient c : connections) {
+                    for (int r = 0; r < requests; ++r) {
+                        c.send(CipherServer.OP_ENCODE, clear);
+                    }
+                    c.out.flush();
+                }
+                int errors = 0;
+                for (CipherClient c : connections) {
+                    List<String> ciphers = new ArrayList<>(requests);
+                    for (int r = 0; r < requests; ++r) {
+                        ciphers.add(new String(c.receive(),
+                                StandardCharsets.UTF_8));
+                    }
+                    for (String decoded : c.decodeAll(ciphers)) {
+                        if (!decoded.equals(clear)) {
+                            errors += 1;
+                        }
+                    }
+                }
+                long end = System.nanoTime();
+                System.out.printf("%d connexions, %d requêtes : %.0f ms, %d"
+                        + " erreurs de déchiffrement%n", clients,
+                        2L * clients * requests, (end - start) / 1e6, errors);
+                System.out.println("décalage deviné : " + connections.get(0)
+                        .guessShift("Ohv Juhfv dwwdtxhqw sdu ghuulhuh"));
+            } finally {
+                for (CipherClient c : connections) {
+                    c.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,415 @@
+import java.nio.CharBuffer;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Un étage de pipeline java.util.concurrent.Flow appliquant l'étape mot à
+ *  mot du chiffrement de Cipher (encodeWords, ou decodeWords) à un flot de
+ *  morceaux de texte. Le décalage global n'est pas appliqué : il ne pourrait
+ *  être deviné au décodage qu'après la fin du flot.
+ * Les morceaux reçus sont coupés n'importe où : le mot éventuellement
+ *  inachevé en fin de morceau est reporté devant le morceau suivant, de
+ *  sorte que la concaténation des morceaux émis est exactement l'encodage
+ *  mot à mot (Cipher.encodeWords) de la concaténation des morceaux reçus.
+ *  Le dernier mot est émis à la fin du flot.
+ * La demande de l'abonné est respectée : un morceau n'est demandé en amont
+ *  que lorsque l'abonné en attend un et qu'aucun morceau transformé n'est
+ *  en attente. Hors du mot reporté, un processeur ne conserve donc jamais
+ *  plus d'un morceau, quelle que soit la lenteur de l'abonné.
+ * Un processeur n'accepte qu'un seul abonné et un seul éditeur. Les
+ *  morceaux reçus ne sont pas modifiés ; les morceaux émis sont neufs.
+ * Comme l'exige la règle 2.13 de Reactive Streams, subscribe, onSubscribe,
+ *  onNext et onError lèvent une NullPointerException sur un argument null.
+ */
+public final class CipherProcessor
+        implements Flow.Processor<CharBuffer, CharBuffer> {
+
+    // ATTRIBUTS
+
+    /**
+     * Ce processeur décode-t-il (sinon il encode) ?
+     */
+    private final boolean decoding;
+
+    /**
+     * Nombre de demandes de drain en cours (le thread qui le fait passer de
+     *  0 à 1 émet pour tous les autres).
+     */
+    private final AtomicInteger wip;
+
+    /**
+     * L'abonnement en amont, null tant que l'éditeur ne s'est pas abonné.
+     */
+    private Flow.Subscription upstream;
+
+    /**
+     * L'abonné en aval, null tant qu'il ne s'est pas abonné.
+     */
+    private Flow.Subscriber<? super CharBuffer> downstream;
+
+    /**
+     * L'appel de onSubscribe sur l'abonné est-il terminé ? Aucun autre
+     *  signal ne lui est envoyé avant (règles 1.3 et 1.9 de Reactive
+     *  Streams).
+     */
+    private boolean subscribed;
+
+    /**
+     * Le nombre de morceaux demandés par l'abonné et pas encore émis.
+     */
+    private long demand;
+
+    /**
+     * Un morceau a-t-il été demandé en amont sans être encore reçu ?
+     */
+    private boolean requested;
+
+    /**
+     * Le morceau transformé en attente d'émission, null s'il n'y en a pas.
+     */
+    private CharBuffer ready;
+
+    /**
+     * Le début de mot reporté : carry[0..carryLength[.
+     */
+    private char[] carry;
+    private int carryLength;
+
+    /**
+     * L'éditeur a-t-il terminé le flot (normalement ou en erreur) ?
+     */
+    private boolean upstreamDone;
+
+    /**
+     * L'erreur à transmettre à l'abonné, null s'il n'y en a pas.
+     */
+    private Throwable error;
+
+    /**
+     * L'abonné a-t-il reçu un signal terminal ou annulé son abonnement ?
+     */
+    private boolean terminated;
+
+    // CONSTRUCTEURS
+
+    private CipherProcessor(boolean decoding) {
+        this.decoding = decoding;
+        this.wip = new AtomicInteger();
+        this.carry = new char[0];
+    }
+
+    /**
+     * Un processeur encodant mot à mot le flot reçu.
+     */
+    public static CipherProcessor encoder() {
+        return new CipherProcessor(false);
+    }
+
+    /**
+     * Un processeur décodant mot à mot le flot reçu.
+     */
+    public static CipherProcessor decoder() {
+        return new CipherProcessor(true);
+    }
+
+    // REQUETES
+
+    /**
+     * Ce processeur décode-t-il (sinon il encode) ?
+     */
+    public boolean isDecoding() {
+        return decoding;
+    }
+
+    // COMMANDES
+
+    /**
+     * Abonne subscriber aux morceaux transformés. Un second abonné reçoit
+     *  aussitôt une IllegalStateException par onError.
+     * @throws NullPointerException si subscriber est null
+     */
+    public void subscribe(Flow.Subscriber<? super CharBuffer> subscriber) {
+        Objects.requireNonNull(subscriber, "la référence est vide");
+        boolean accepted;
+        synchronized (this) {
+            accepted = downstream == null;
+            if (accepted) {
+                downstream = subscriber;
+            }
+        }
+        if (!accepted) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                public void request(long n) {
+                    // rien à émettre
+                }
+                public void cancel() {
+                    // rien à annuler
+                }
+            });
+            subscriber.onError(new IllegalStateException(
+                    "ce processeur a déjà un abonné"));
+            return;
+        }
+        subscriber.onSubscribe(new Downstream());
+        synchronized (this) {
+            subscribed = true;
+        }
+        drain();
+    }
+
+    public void onSubscribe(Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription, "la référence est vide");
+        boolean accepted;
+        synchronized (this) {
+            accepted = upstream == null;
+            if (accepted) {
+                upstream = subscription;
+            }
+        }
+        if (!accepted) {
+            subscription.cancel();
+            return;
+        }
+        drain();
+    }
+
+    /**
+     * Transforme les mots complets de chunk (précédés du mot reporté) et
+     *  reporte le mot inachevé qui le termine.
+     * @throws NullPointerException si chunk est null
+     */
+    public void onNext(CharBuffer chunk) {
+        Objects.requireNonNull(chunk, "la référence est vide");
+        synchronized (this) {
+            requested = false;
+            if (terminated) {
+                return;
+            }
+            int length = chunk.remaining();
+            char[] text = new char[carryLength + length];
+            System.arraycopy(carry, 0, text, 0, carryLength);
+            chunk.get(chunk.position(), text, carryLength, length);
+            int cut = text.length;
+            while (cut > 0 && !Cipher.isSeparator(text[cut - 1])) {
+                --cut;
+            }
+            if (cut > 0) {
+                transform(text, cut);
+                ready = CharBuffer.wrap(text, 0, cut);
+                carry = new char[text.length - cut];
+                System.arraycopy(text, cut, carry, 0, carry.length);
+                carryLength = carry.length;
+            } else {
+                carry = text;
+                carryLength = text.length;
+            }
+        }
+        drain();
+    }
+
+    /**
+     * Transmet throwable à l'abonné, en abandonnant le morceau en attente et
+     *  le mot reporté.
+     * @throws NullPointerException si throwable est null
+     */
+    public void onError(Throwable throwable) {
+        Objects.requireNonNull(throwable, "la référence est vide");
+        synchronized (this) {
+            upstreamDone = true;
+            error = throwable;
+        }
+        drain();
+    }
+
+    /**
+     * Émet le mot reporté puis termine le flot, dès que l'abonné le demande.
+     */
+    public void onComplete() {
+        synchronized (this) {
+            upstreamDone = true;
+        }
+        drain();
+    }
+
+    // OUTILS
+
+    /**
+     * Une représentation sous forme de chaîne de ce processeur.
+     */
+    public synchronized String toString() {
+        return "CipherProcessor[" + (decoding ? "decode" : "encode")
+                + ";demand:" + demand + ";carry:" + carryLength + "]";
+    }
+
+    /**
+     * Encode ou décode, sur place, les mots de text[0..length[.
+     */
+    private void transform(char[] text, int length) {
+        if (decoding) {
+            Cipher.decodeWords(text, 0, length);
+        } else {
+            Cipher.encodeWords(text, 0, length);
+        }
+    }
+
+    /**
+     * Fait progresser ce processeur tant que c'est possible : émission du
+     *  morceau en attente si l'abonné en demande, demande d'un morceau en
+     *  amont sinon, signal terminal en fin de flot. Un seul thread à la
+     *  fois émet ; les appels concurrents ou réentrants (un abonné appelant
+     *  request depuis onNext) se contentent de lui signaler du travail.
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (step()) {
+                // on continue tant qu'un morceau a été émis
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Une étape de drain ; retourne true si un morceau a été émis.
+     */
+    private boolean step() {
+        Flow.Subscriber<? super CharBuffer> subscriber;
+        Flow.Subscription subscription;
+        CharBuffer out = null;
+        Throwable failure = null;
+        boolean complete = false;
+        boolean request = false;
+        synchronized (this) {
+            subscriber = downstream;
+            subscription = upstream;
+            if (terminated || !subscribed) {
+                return false;
+            }
+            if (error != null) {
+                failure = error;
+                terminated = true;
+                ready = null;
+                carry = null;
+            } else {
+                if (ready == null && upstreamDone && carryLength > 0) {
+                    transform(carry, carryLength);
+                    ready = CharBuffer.wrap(carry, 0, carryLength);
+                    carry = new char[0];
+                    carryLength = 0;
+                }
+                if (ready != null) {
+                    if (demand > 0) {
+                        out = ready;
+                        ready = null;
+                        demand -= 1;
+                    }
+                } else if (upstreamDone) {
+                    complete = true;
+                    terminated = true;
+                } else if (demand > 0 && !requested && subscription != null) {
+                    requested = true;
+                    request = true;
+                }
+            }
+        }
+        if (failure != null) {
+            subscriber.onError(failure);
+        } else if (out != null) {
+            subscriber.onNext(out);
+            return true;
+        } else if (complete) {
+            subscriber.onComplete();
+        } else if (request) {
+            subscription.request(1);
+        }
+        return false;
+    }
+
+    /**
+     * L'abonnement de l'abonné en aval.
+     */
+    private final class Downstream implements Flow.Subscription {
+
+        public void request(long n) {
+            Flow.Subscription subscription = null;
+            synchronized (CipherProcessor.this) {
+                if (terminated) {
+                    return;
+                }
+                if (n <= 0) {
+                    error = new IllegalArgumentException(
+                            "la demande doit être strictement positive");
+                    subscription = upstream;
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+            }
+            if (subscription != null) {
+                subscription.cancel();
+            }
+            drain();
+        }
+
+        public void cancel() {
+            Flow.Subscription subscription;
+            synchronized (CipherProcessor.this) {
+                terminated = true;
+                ready = null;
+                carry = null;
+                subscription = upstream;
+            }
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+    }
+
+    // TESTS
+
+    public static void main(String[] args) throws InterruptedException {
+        String clear = "Les Grecs attaquent par derrière ! Tenez la porte"
+                + " jusqu'à l'aube.";
+        CipherProcessor encoder = encoder();
+        CipherProcessor decoder = decoder();
+        StringBuilder result = new StringBuilder();
+        CountDownLatch done = new CountDownLatch(1);
+        SubmissionPublisher<CharBuffer> publisher = new SubmissionPublisher<>();
+        try {
+            publisher.subscribe(encoder);
+            encoder.subscribe(decoder);
+            decoder.subscribe(new Flow.Subscriber<CharBuffer>() {
+                private Flow.Subscription subscription;
+                public void onSubscribe(Flow.Subscription s) {
+                    subscription = s;
+                    s.request(1);
+                }
+                public void onNext(CharBuffer chunk) {
+                    System.out.println("reçu : \"" + chunk + "\"");
+                    result.append(chunk);
+                    subscription.request(1);
+                }
+                public void onError(Throwable t) {
+                    t.printStackTrace();
+                }
+                public void onComplete() {
+                    done.countDown();
+                }
+            });
+            for (int i = 0; i < clear.length(); i += 7) {
+                publisher.submit(CharBuffer.wrap(clear, i,
+                        Math.min(i + 7, clear.length())));
+            }
+        } finally {
+            publisher.close();
+        }
+        done.await(1, TimeUnit.SECONDS);
+        System.out.println(result.toString().equals(clear));
+    }
+}
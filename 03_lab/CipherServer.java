@@ -0,0 +1,397 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Un serveur TCP de chiffrement : chaque requête demande l'encodage ou le
+ *  décodage d'un message par Cipher, ou la recherche de son décalage par
+ *  SubstCipher.guessShiftFrom.
+ * Le protocole est fait de trames préfixées par leur longueur (entiers
+ *  gros-boutistes, textes en UTF-8) :
+ * <pre>
+ *     requête : octet opération (OP_ENCODE, OP_DECODE ou OP_GUESS_SHIFT),
+ *               int n, n octets de texte
+ *     réponse : octet état (STATUS_OK ou STATUS_ERROR), int n, n octets
+ *               (le texte transformé, le décalage sur 4 octets pour
+ *               OP_GUESS_SHIFT, ou le message d'erreur) </pre>
+ * Un client peut envoyer plusieurs requêtes sans attendre les réponses : elles
+ *  sont traitées et répondues dans l'ordre, et les réponses aux requêtes déjà
+ *  reçues sont envoyées ensemble.
+ * La longueur annoncée d'une trame n'est pas allouée d'avance : le tampon
+ *  d'une requête grandit au fil des octets effectivement reçus, de sorte
+ *  qu'un en-tête mensonger ne coûte au serveur que ce que le client envoie
+ *  vraiment.
+ * Chaque connexion est servie par son propre thread : un thread virtuel si la
+ *  machine virtuelle en propose (Java 21 et suivants), sinon un thread du
+ *  système pris dans une réserve extensible.
+ * @inv <pre>
+ *     getPort() > 0 </pre>
+ */
+public final class CipherServer implements Closeable {
+
+    // ATTRIBUTS STATIQUES
+
+    /**
+     * Opération d'encodage d'un message (Cipher.getCipherText).
+     */
+    public static final int OP_ENCODE = 1;
+
+    /**
+     * Opération de décodage d'un message (Cipher.getClearText).
+     */
+    public static final int OP_DECODE = 2;
+
+    /**
+     * Opération de recherche du décalage (SubstCipher.guessShiftFrom).
+     */
+    public static final int OP_GUESS_SHIFT = 3;
+
+    /**
+     * État d'une réponse réussie.
+     */
+    public static final int STATUS_OK = 0;
+
+    /**
+     * État d'une réponse en erreur.
+     */
+    public static final int STATUS_ERROR = 1;
+
+    /**
+     * Longueur maximale (en octets) du texte d'une trame.
+     */
+    public static final int MAX_FRAME_LENGTH = 1 << 26;
+
+    /**
+     * Nombre de connexions en attente d'acceptation tolérées.
+     */
+    private static final int BACKLOG = 4096;
+
+    /**
+     * Taille des tampons de lecture et d'écriture d'une connexion.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Attente maximale (en millisecondes) entre deux acceptations échouées.
+     */
+    private static final long MAX_ACCEPT_BACKOFF = 1000;
+
+    // ATTRIBUTS
+
+    /**
+     * La socket d'écoute de ce serveur.
+     */
+    private final ServerSocket serverSocket;
+
+    /**
+     * L'exécuteur des connexions (et de la boucle d'acceptation).
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Ce serveur sert-il ses connexions par des threads virtuels ?
+     */
+    private final boolean virtualThreads;
+
+    /**
+     * Les connexions ouvertes.
+     */
+    private final Set<Socket> connections;
+
+    /**
+     * Ce serveur est-il arrêté ?
+     */
+    private volatile boolean closed;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Un serveur (pas encore démarré) écoutant sur le port port de
+     *  l'interface de bouclage ; port == 0 choisit un port libre.
+     * @pre <pre>
+     *     0 <= port <= 65535 </pre>
+     */
+    public CipherServer(int port) throws IOException {
+        this(InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * Un serveur (pas encore démarré) écoutant sur le port port de
+     *  l'adresse address ; port == 0 choisit un port libre.
+     * @pre <pre>
+     *     address != null
+     *     0 <= port <= 65535 </pre>
+     */
+    public CipherServer(InetAddress address, int port) throws IOException {
+        if (address == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        if (port < 0 || port > 65535) {
+            throw new IllegalArgumentException("port invalide : " + port);
+        }
+        this.serverSocket = new ServerSocket(port, BACKLOG, address);
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual
+                : Executors.newCachedThreadPool(task -> {
+                    Thread t = new Thread(task, "cipher-server");
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.connections = ConcurrentHashMap.newKeySet();
+    }
+
+    // REQUETES
+
+    /**
+     * Le port d'écoute de ce serveur.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Ce serveur sert-il ses connexions par des threads virtuels ?
+     */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Le nombre de connexions actuellement ouvertes.
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    // COMMANDES
+
+    /**
+     * Démarre l'acceptation des connexions, en arrière-plan.
+     */
+    public void start() {
+        executor.execute(this::acceptLoop);
+    }
+
+    /**
+     * Arrête ce serveur et ferme toutes ses connexions.
+     */
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        for (Socket s : connections) {
+            s.close();
+        }
+        executor.shutdownNow();
+    }
+
+    // OUTILS
+
+    /**
+     * Un exécuteur créant un thread virtuel par tâche, ou null si la machine
+     *  virtuelle n'en propose pas. La méthode est recherchée par réflexion
+     *  pour que cette classe se compile et s'exécute aussi sur Java 17.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Accepte les connexions jusqu'à l'arrêt du serveur.
+     * Un échec persistant de accept (plus de descripteurs de fichiers
+     *  disponibles, par exemple) ne fait pas tourner la boucle à vide :
+     *  l'attente avant le nouvel essai double à chaque échec consécutif,
+     *  jusqu'à MAX_ACCEPT_BACKOFF millisecondes.
+     */
+    private void acceptLoop() {
+        long backoff = 0;
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (closed) {
+                    return;
+                }
+                backoff = Math.min(Math.max(2 * backoff, 1),
+                        MAX_ACCEPT_BACKOFF);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                continue;
+            }
+            backoff = 0;
+            try {
+                socket.setTcpNoDelay(true);
+            } catch (IOException e) {
+                try {
+                    socket.close();
+                } catch (IOException ce) {
+                    // rien de plus à faire
+                }
+                continue;
+            }
+            connections.add(socket);
+            executor.execute(() -> serve(socket));
+        }
+    }
+
+    /**
+     * Traite les requêtes de socket jusqu'à sa fermeture par le client.
+     * Les réponses sont accumulées dans le tampon d'écriture tant que des
+     *  requêtes déjà reçues restent à traiter.
+     */
+    private void serve(Socket socket) {
+        try (socket;
+                DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(socket.getInputStream(),
+                                BUFFER_SIZE));
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(socket.getOutputStream(),
+                                BUFFER_SIZE))) {
+            while (true) {
+                int op = in.read();
+                if (op < 0) {
+                    break;
+                }
+                int length = in.readInt();
+                if (length < 0 || length > MAX_FRAME_LENGTH) {
+                    writeFrame(out, STATUS_ERROR, ("trame trop longue : "
+                            + length).getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                    break;
+                }
+                handle(op, readPayload(in, length), out);
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (EOFException | SocketException e) {
+            // connexion fermée par le client ou par close()
+        } catch (IOException e) {
+            // connexion perdue : rien à répondre
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    /**
+     * Écrit sur out la réponse à la requête d'opération op et de texte
+     *  payload.
+     */
+    private static void handle(int op, byte[] payload, DataOutputStream out)
+            throws IOException {
+        String text = new String(payload, StandardCharsets.UTF_8);
+        byte[] result;
+        try {
+            switch (op) {
+                case OP_ENCODE: {
+                    Cipher c = new Cipher();
+                    c.setClearText(text);
+                    result = c.getCipherText().getBytes(StandardCharsets.UTF_8);
+                    break;
+                }
+                case OP_DECODE: {
+                    Cipher c = new Cipher();
+                    c.setCipherText(text);
+                    result = c.getClearText().getBytes(StandardCharsets.UTF_8);
+                    break;
+                }
+                case OP_GUESS_SHIFT: {
+                    int shift = SubstCipher.guessShiftFrom(text);
+                    result = new byte[] {
+                        (byte) (shift >>> 24), (byte) (shift >>> 16),
+                        (byte) (shift >>> 8), (byte) shift
+                    };
+                    break;
+                }
+                default:
+                    writeFrame(out, STATUS_ERROR, ("opération inconnue : "
+                            + op).getBytes(StandardCharsets.UTF_8));
+                    return;
+            }
+        } catch (RuntimeException e) {
+            writeFrame(out, STATUS_ERROR,
+                    String.valueOf(e).getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        writeFrame(out, STATUS_OK, result);
+    }
+
+    /**
+     * Les length octets suivants de in. Le tableau n'est pas alloué d'un
+     *  coup à la longueur annoncée : il commence à BUFFER_SIZE octets et
+     *  double à mesure que les octets arrivent, sans dépasser length.
+     * @pre <pre>
+     *     in != null
+     *     0 <= length <= MAX_FRAME_LENGTH </pre>
+     * @throws EOFException si in se termine avant length octets
+     */
+    static byte[] readPayload(DataInputStream in, int length)
+            throws IOException {
+        assert in != null && 0 <= length && length <= MAX_FRAME_LENGTH;
+        byte[] payload = new byte[Math.min(length, BUFFER_SIZE)];
+        int n = 0;
+        while (n < length) {
+            if (n == payload.length) {
+                payload = Arrays.copyOf(payload,
+                        (int) Math.min(length, 2L * payload.length));
+            }
+            int r = in.read(payload, n, payload.length - n);
+            if (r < 0) {
+                throw new EOFException();
+            }
+            n += r;
+        }
+        return payload;
+    }
+
+    /**
+     * Écrit sur out une trame d'en-tête head et de contenu payload.
+     */
+    static void writeFrame(DataOutputStream out, int head, byte[] payload)
+            throws IOException {
+        out.writeByte(head);
+        out.writeInt(payload.length);
+        out.write(payload);
+    }
+
+    // TESTS
+
+    /**
+     * Lance un serveur sur le port args[0] (7070 par défaut) de l'interface
+     *  de bouclage, jusqu'à l'arrêt du programme.
+     */
+    public static void main(String[] args) throws IOException,
+            InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7070;
+        CipherServer server = new CipherServer(port);
+        server.start();
+        System.out.println("serveur à l'écoute sur le port " + server.getPort()
+                + (server.usesVirtualThreads() ? " (threads virtuels)"
+                        : " (threads du système)"));
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,465 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Le chiffrement (ou déchiffrement) de tous les fichiers d'une
+ *  arborescence, vers une arborescence de même forme.
+ * Chaque fichier est traité comme un message de Cipher, par les deux étapes
+ *  complètes du chiffrement : son chiffré est celui qu'on obtiendrait par
+ *  setClearText puis getCipherText (avec un décalage global aléatoire
+ *  propre au fichier), son déchiffré celui de setCipherText puis
+ *  getClearText.
+ * Les fichiers (textes UTF-8) sont lus et écrits par des
+ *  AsynchronousFileChannel, et transformés sur le ForkJoinPool commun : le
+ *  parcours de l'arborescence, les entrées-sorties et les calculs se
+ *  recouvrent. Au plus maxOutstanding fichiers sont en cours de traitement
+ *  à la fois, ce qui borne la file d'attente du disque. En outre, la
+ *  taille totale des fichiers en cours ne dépasse pas MAX_BYTES_IN_FLIGHT
+ *  octets, un fichier plus grand étant traité seul. Un fichier de n
+ *  octets occupe en mémoire environ 4n octets pendant son traitement
+ *  (octets lus, caractères décodés, octets à écrire).
+ * Un fichier qui ne peut être lu, n'est pas un texte UTF-8 valide ou ne peut
+ *  être écrit est compté comme un échec sans interrompre les autres.
+ */
+public final class DirectoryCipher {
+
+    // ATTRIBUTS STATIQUES
+
+    /**
+     * Nombre maximal de fichiers en cours de traitement par défaut.
+     */
+    public static final int DEFAULT_MAX_OUTSTANDING = 64;
+
+    /**
+     * Taille totale maximale (en octets) des fichiers en cours de
+     *  traitement.
+     */
+    public static final int MAX_BYTES_IN_FLIGHT = 1 << 28;
+
+    /**
+     * Taille maximale (en octets) d'un fichier transformé.
+     */
+    private static final long MAX_FILE_SIZE = Integer.MAX_VALUE - 8;
+
+    /**
+     * Type de transformation : encodage.
+     */
+    private static final int ENCODE = 1;
+
+    /**
+     * Type de transformation : décodage.
+     */
+    private static final int DECODE = 2;
+
+    // CONSTRUCTEURS
+
+    private DirectoryCipher() {
+        // classe utilitaire
+    }
+
+    // COMMANDES
+
+    /**
+     * Écrit sous target le chiffré de chaque fichier de l'arborescence
+     *  source, au même chemin relatif, avec au plus DEFAULT_MAX_OUTSTANDING
+     *  fichiers en cours à la fois.
+     * @pre <pre>
+     *     source != null && target != null
+     *     source est un répertoire
+     *     target n'est pas dans source </pre>
+     * @post <pre>
+     *     tout fichier de source réussi a son chiffré sous target </pre>
+     */
+    public static Summary encodeTree(Path source, Path target)
+            throws IOException, InterruptedException {
+        return transformTree(source, target, ENCODE, DEFAULT_MAX_OUTSTANDING);
+    }
+
+    /**
+     * Écrit sous target le déchiffré de chaque fichier de l'arborescence
+     *  source, au même chemin relatif, avec au plus DEFAULT_MAX_OUTSTANDING
+     *  fichiers en cours à la fois.
+     * @pre <pre>
+     *     source != null && target != null
+     *     source est un répertoire
+     *     target n'est pas dans source </pre>
+     * @post <pre>
+     *     tout fichier de source réussi a son déchiffré sous target </pre>
+     */
+    public static Summary decodeTree(Path source, Path target)
+            throws IOException, InterruptedException {
+        return transformTree(source, target, DECODE, DEFAULT_MAX_OUTSTANDING);
+    }
+
+    /**
+     * Comme encodeTree(source, target) (si decode == false) ou
+     *  decodeTree(source, target), avec au plus maxOutstanding fichiers en
+     *  cours à la fois.
+     * @pre <pre>
+     *     source != null && target != null
+     *     source est un répertoire
+     *     target n'est pas dans source
+     *     maxOutstanding > 0 </pre>
+     */
+    public static Summary transformTree(Path source, Path target,
+            boolean decode, int maxOutstanding)
+            throws IOException, InterruptedException {
+        return transformTree(source, target, decode ? DECODE : ENCODE,
+                maxOutstanding);
+    }
+
+    // OUTILS
+
+    /**
+     * Transformation (selon type) de l'arborescence source vers target.
+     * Le parcours de source prend pour chaque fichier un jeton du sémaphore
+     *  des fichiers, puis autant de jetons du sémaphore des octets que le
+     *  fichier a d'octets (au plus MAX_BYTES_IN_FLIGHT), tous rendus à la
+     *  fin de son écriture ; reprendre ensuite tous les jetons de fichiers
+     *  revient à attendre la fin de tous les fichiers.
+     */
+    private static Summary transformTree(Path source, Path target, int type,
+            int maxOutstanding) throws IOException, InterruptedException {
+        if (source == null || target == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        if (maxOutstanding <= 0) {
+            throw new IllegalArgumentException(
+                    "Le nombre de fichiers en cours doit être strictement"
+                    + " positif");
+        }
+        if (!Files.isDirectory(source)) {
+            throw new IllegalArgumentException(source
+                    + " n'est pas un répertoire");
+        }
+        Path from = source.toAbsolutePath().normalize();
+        Path to = target.toAbsolutePath().normalize();
+        if (to.startsWith(from)) {
+            throw new IllegalArgumentException(target + " est dans " + source);
+        }
+        Tracker tracker = new Tracker(maxOutstanding);
+        long start = System.nanoTime();
+        try {
+            Files.walkFileTree(from, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file,
+                        BasicFileAttributes attrs) throws IOException {
+                    if (attrs.isRegularFile()) {
+                        Path out = to.resolve(from.relativize(file));
+                        Files.createDirectories(out.getParent());
+                        int weight = (int) Math.min(attrs.size(),
+                                MAX_BYTES_IN_FLIGHT);
+                        try {
+                            tracker.permits.acquire();
+                            try {
+                                tracker.bytes.acquire(weight);
+                            } catch (InterruptedException e) {
+                                tracker.permits.release();
+                                throw e;
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new IOException("parcours interrompu", e);
+                        }
+                        new FileJob(file, out, type, weight, tracker).start();
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file,
+                        IOException e) {
+                    tracker.failed(file);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } finally {
+            tracker.permits.acquire(maxOutstanding);
+        }
+        return new Summary(tracker, System.nanoTime() - start);
+    }
+
+    /**
+     * Le suivi partagé des fichiers d'une transformation.
+     */
+    private static final class Tracker {
+
+        final Semaphore permits;
+        final Semaphore bytes = new Semaphore(MAX_BYTES_IN_FLIGHT);
+        final AtomicLong files = new AtomicLong();
+        final AtomicLong bytesRead = new AtomicLong();
+        final AtomicLong bytesWritten = new AtomicLong();
+        final List<Path> failures =
+                Collections.synchronizedList(new ArrayList<>());
+
+        Tracker(int maxOutstanding) {
+            permits = new Semaphore(maxOutstanding);
+        }
+
+        void succeeded(long read, long written) {
+            files.incrementAndGet();
+            bytesRead.addAndGet(read);
+            bytesWritten.addAndGet(written);
+        }
+
+        void failed(Path file) {
+            failures.add(file);
+        }
+
+        /**
+         * Rend les jetons d'un fichier de poids weight.
+         */
+        void release(int weight) {
+            bytes.release(weight);
+            permits.release();
+        }
+    }
+
+    /**
+     * Le traitement d'un fichier : lecture asynchrone complète, puis
+     *  transformation sur le ForkJoinPool commun, puis écriture asynchrone.
+     *  Chaque étape est lancée par la fin de la précédente ; les jetons du
+     *  fichier sont rendus à la fin de l'écriture ou au premier échec.
+     */
+    private static final class FileJob {
+
+        private final Path source;
+        private final Path target;
+        private final int type;
+        private final int weight;
+        private final Tracker tracker;
+        private AsynchronousFileChannel channel;
+        private ByteBuffer buffer;
+        private long read;
+
+        FileJob(Path source, Path target, int type, int weight,
+                Tracker tracker) {
+            this.source = source;
+            this.target = target;
+            this.type = type;
+            this.weight = weight;
+            this.tracker = tracker;
+        }
+
+        void start() {
+            try {
+                channel = AsynchronousFileChannel.open(source,
+                        StandardOpenOption.READ);
+                long size = channel.size();
+                if (size > MAX_FILE_SIZE) {
+                    throw new IOException(source + " : fichier trop grand");
+                }
+                buffer = ByteBuffer.allocate((int) size);
+                read();
+            } catch (IOException | RuntimeException e) {
+                fail();
+            }
+        }
+
+        /**
+         * Lit la suite du fichier, ou passe à la transformation s'il est lu.
+         */
+        private void read() {
+            if (!buffer.hasRemaining()) {
+                close();
+                ForkJoinPool.commonPool().execute(this::transform);
+                return;
+            }
+            try {
+                channel.read(buffer, buffer.position(), null,
+                        new CompletionHandler<Integer, Void>() {
+                            public void completed(Integer n, Void v) {
+                                if (n < 0) {
+                                    buffer.limit(buffer.position());
+                                }
+                                read();
+                            }
+                            public void failed(Throwable e, Void v) {
+                                fail();
+                            }
+                        });
+            } catch (RuntimeException e) {
+                fail();
+            }
+        }
+
+        /**
+         * Décode le texte lu, le chiffre ou le déchiffre comme un message
+         *  de Cipher et lance son écriture.
+         */
+        private void transform() {
+            try {
+                buffer.flip();
+                read = buffer.remaining();
+                CharBuffer chars =
+                        StandardCharsets.UTF_8.newDecoder().decode(buffer);
+                // tableau propre au décodeur : le texte commence à l'indice 0
+                char[] text = chars.array();
+                assert chars.arrayOffset() + chars.position() == 0;
+                int[] bounds = { 0, chars.remaining() };
+                if (type == ENCODE) {
+                    Cipher.encodeAll(text, bounds, text);
+                } else {
+                    Cipher.decodeAll(text, bounds, text);
+                }
+                buffer = StandardCharsets.UTF_8.newEncoder().encode(
+                        CharBuffer.wrap(text, 0, bounds[1]));
+                channel = AsynchronousFileChannel.open(target,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+                write();
+            } catch (IOException | RuntimeException e) {
+                // CharacterCodingException : le fichier n'est pas un texte
+                //  UTF-8 valide
+                fail();
+            }
+        }
+
+        /**
+         * Écrit la suite du texte transformé, ou termine s'il est écrit.
+         */
+        private void write() {
+            if (!buffer.hasRemaining()) {
+                close();
+                tracker.succeeded(read, buffer.limit());
+                tracker.release(weight);
+                return;
+            }
+            try {
+                channel.write(buffer, buffer.position(), null,
+                        new CompletionHandler<Integer, Void>() {
+                            public void completed(Integer n, Void v) {
+                                write();
+                            }
+                            public void failed(Throwable e, Void v) {
+                                fail();
+                            }
+                        });
+            } catch (RuntimeException e) {
+                fail();
+            }
+        }
+
+        private void fail() {
+            close();
+            tracker.failed(source);
+            tracker.release(weight);
+        }
+
+        private void close() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // rien de plus à faire
+                }
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * Le bilan d'une transformation d'arborescence.
+     */
+    public static final class Summary {
+
+        private final long files;
+        private final List<Path> failures;
+        private final long bytesRead;
+        private final long bytesWritten;
+        private final long nanos;
+
+        private Summary(Tracker tracker, long nanos) {
+            this.files = tracker.files.get();
+            this.failures = List.copyOf(tracker.failures);
+            this.bytesRead = tracker.bytesRead.get();
+            this.bytesWritten = tracker.bytesWritten.get();
+            this.nanos = nanos;
+        }
+
+        /**
+         * Le nombre de fichiers transformés avec succès.
+         */
+        public long getFileCount() {
+            return files;
+        }
+
+        /**
+         * Les fichiers qui n'ont pu être transformés.
+         */
+        public List<Path> getFailures() {
+            return failures;
+        }
+
+        /**
+         * Le nombre d'octets lus dans les fichiers transformés.
+         */
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        /**
+         * Le nombre d'octets écrits.
+         */
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        /**
+         * La durée (en nanosecondes) de la transformation.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * Le bilan : nombres de fichiers et d'octets, durée et débits.
+         */
+        public String toString() {
+            double seconds = nanos / 1e9;
+            return String.format("%d fichiers (%d échecs), %.1f Mo lus,"
+                    + " %.1f Mo écrits en %.2f s : %.1f Mo/s, %.0f fichiers/s",
+                    files, failures.size(), bytesRead / 1e6,
+                    bytesWritten / 1e6, seconds, bytesRead / 1e6 / seconds,
+                    files / seconds);
+        }
+    }
+
+    // TESTS
+
+    /**
+     * java DirectoryCipher (encode|decode) source target [maxOutstanding]
+     */
+    public static void main(String[] args) throws IOException,
+            InterruptedException {
+        if (args.length < 3 || !args[0].matches("encode|decode")) {
+            System.out.println("usage : java DirectoryCipher (encode|decode)"
+                    + " source target [maxOutstanding]");
+            return;
+        }
+        int maxOutstanding = args.length > 3 ? Integer.parseInt(args[3])
+                : DEFAULT_MAX_OUTSTANDING;
+        Summary summary = transformTree(Path.of(args[1]), Path.of(args[2]),
+                args[0].equals("decode"), maxOutstanding);
+        System.out.println(summary);
+        for (Path failure : summary.getFailures()) {
+            System.out.println("échec : " + failure);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Un accumulateur incrémental des occurrences des lettres non accentuées
+ *  (minuscules ou majuscules) d'un message reçu par morceaux. Un
+ *  accumulateur créé avec le repli des accents compte de plus chaque lettre
+ *  latine accentuée comme sa lettre de base (AccentFolding.letterRank).
+ * Il permet de deviner le décalage d'un message chiffré par SubstCipher
+ *  pendant que ce message arrive encore : getBestShift() applique à tout
+ *  moment l'algorithme de SubstCipher.guessShiftFrom aux morceaux déjà reçus.
+ * Plusieurs accumulateurs alimentés en parallèle (un par thread par exemple)
+ *  peuvent être fusionnés par merge. Un accumulateur n'est pas lui-même
+ *  partageable entre threads.
+ * @inv <pre>
+ *     getTotal() >= 0
+ *     getTotal() == somme des getCount(c) pour c de 'A' à 'Z' </pre>
+ */
+public class LetterFrequencyAccumulator {
+
+    // ATTRIBUTS STATIQUES
+
+    /**
+     * Taille de l'alphabet.
+     */
+    private static final int ALPHABET_SIZE = SubstCipher.ALPHABET_SIZE;
+
+    // ATTRIBUTS
+
+    /**
+     * Le nombre d'occurrences de chaque lettre : counts[i] compte la
+     *  (i+1)-ème lettre de l'alphabet.
+     */
+    private final long[] counts;
+
+    /**
+     * Compteurs intermédiaires remplis par SubstCipher.byteKernel().
+     */
+    private final int[] scratch;
+
+    /**
+     * Les lettres accentuées sont-elles comptées comme leur lettre de base ?
+     */
+    private final boolean foldAccents;
+
+    /**
+     * Le nombre total de lettres comptées.
+     */
+    private long total;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Un accumulateur n'ayant encore rien reçu, ignorant les lettres
+     *  accentuées.
+     * @post <pre>
+     *     getTotal() == 0
+     *     getBestShift() == 0
+     *     !isAccentFolding() </pre>
+     */
+    public LetterFrequencyAccumulator() {
+        this(false);
+    }
+
+    /**
+     * Un accumulateur n'ayant encore rien reçu, qui compte les lettres
+     *  accentuées comme leur lettre de base si foldAccents.
+     * @post <pre>
+     *     getTotal() == 0
+     *     getBestShift() == 0
+     *     isAccentFolding() == foldAccents </pre>
+     */
+    public LetterFrequencyAccumulator(boolean foldAccents) {
+        this.counts = new long[ALPHABET_SIZE];
+        this.scratch = new int[ALPHABET_SIZE];
+        this.foldAccents = foldAccents;
+        this.total = 0;
+    }
+
+    // REQUETES
+
+    /**
+     * Cet accumulateur compte-t-il les lettres accentuées comme leur lettre
+     *  de base ?
+     */
+    public boolean isAccentFolding() {
+        return foldAccents;
+    }
+
+    /**
+     * Le nombre d'occurrences de la lettre letter (minuscule ou majuscule,
+     *  et ses variantes accentuées si isAccentFolding()) parmi les morceaux
+     *  reçus.
+     * @pre <pre>
+     *     SubstCipher.isNonAccentedLetter(letter) </pre>
+     */
+    public long getCount(char letter) {
+        if (!SubstCipher.isNonAccentedLetter(letter)) {
+            throw new AssertionError("la lettre doit être non accentuée");
+        }
+        return counts[(letter | 0x20) - 'a'];
+    }
+
+    /**
+     * Le nombre total de lettres comptées parmi les morceaux reçus.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Le décalage le plus probable au vu des morceaux reçus, calculé comme
+     *  par SubstCipher.guessShiftFrom : la lettre la plus fréquente est
+     *  supposée être l'encodage de SubstCipher.MOST_FREQUENT_CHAR, et en cas
+     *  d'égalité la plus petite lettre est retenue.
+     * @post <pre>
+     *     getTotal() == 0 ==> result == 0
+     *     getTotal() > 0
+     *         ==> Let f ::= la lettre la plus fréquente reçue
+     *             result == f - SubstCipher.MOST_FREQUENT_CHAR </pre>
+     */
+    public int getBestShift() {
+        if (total == 0) {
+            return 0;
+        }
+        int m = 0;
+        for (int i = 1; i < ALPHABET_SIZE; ++i) {
+            if (counts[i] > counts[m]) {
+                m = i;
+            }
+        }
+        return m - (SubstCipher.MOST_FREQUENT_CHAR - 'A');
+    }
+
+    /**
+     * Une représentation sous forme de chaîne de cet accumulateur.
+     * @post
+     *     result.equals("LetterFrequencyAccumulator[total:" + getTotal()
+     *         + ";shift:" + getBestShift() + "]")
+     */
+    public String toString() {
+        return "LetterFrequencyAccumulator[total:" + total
+                + ";shift:" + getBestShift() + "]";
+    }
+
+    // COMMANDES
+
+    /**
+     * Compte les lettres du morceau text.
+     * @pre <pre>
+     *     text != null </pre>
+     * @post <pre>
+     *     les lettres de text ont été ajoutées aux compteurs </pre>
+     */
+    public void feed(String text) {
+        if (text == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        for (int i = 0; i < text.length(); ++i) {
+            count(text.charAt(i));
+        }
+    }
+
+    /**
+     * Compte les lettres des length caractères de text à partir de from.
+     * @pre <pre>
+     *     text != null
+     *     0 <= from && from + length <= text.length() </pre>
+     * @post <pre>
+     *     les lettres de text[from..from + length[ ont été ajoutées aux
+     *     compteurs </pre>
+     */
+    public void feed(String text, int from, int length) {
+        if (text == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        assert 0 <= from && from + length <= text.length();
+        for (int i = from; i < from + length; ++i) {
+            count(text.charAt(i));
+        }
+    }
+
+    /**
+     * Compte les lettres des length caractères de text à partir de from.
+     * @pre <pre>
+     *     text != null
+     *     0 <= from && from + length <= text.length </pre>
+     * @post <pre>
+     *     les lettres de text[from..from + length[ ont été ajoutées aux
+     *     compteurs </pre>
+     */
+    public void feed(char[] text, int from, int length) {
+        if (text == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        assert 0 <= from && from + length <= text.length;
+        for (int i = from; i < from + length; ++i) {
+            count(text[i]);
+        }
+    }
+
+    /**
+     * Compte les lettres des octets restants (ASCII ou ISO-8859-1) de buffer,
+     *  dont la position avance jusqu'à sa limite. Les lettres accentuées
+     *  d'ISO-8859-1 ne sont comptées que si isAccentFolding().
+     * @pre <pre>
+     *     buffer != null </pre>
+     * @post <pre>
+     *     !buffer.hasRemaining()
+     *     les lettres des octets restants de old buffer ont été ajoutées
+     *     aux compteurs </pre>
+     */
+    public void feed(ByteBuffer buffer) {
+        if (buffer == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        if (buffer.hasArray() && !foldAccents) {
+            int length = buffer.remaining();
+            SubstCipher.byteKernel().countLetters(buffer.array(),
+                    buffer.arrayOffset() + buffer.position(), length, scratch);
+            for (int i = 0; i < ALPHABET_SIZE; ++i) {
+                counts[i] += scratch[i];
+                total += scratch[i];
+                scratch[i] = 0;
+            }
+            buffer.position(buffer.limit());
+        } else {
+            while (buffer.hasRemaining()) {
+                count((char) (buffer.get() & 0xFF));
+            }
+        }
+    }
+
+    /**
+     * Ajoute à cet accumulateur les compteurs de other, qui n'est pas
+     *  modifié.
+     * @pre <pre>
+     *     other != null && other != this </pre>
+     * @post <pre>
+     *     getTotal() == old getTotal() + other.getTotal()
+     *     forall c, 'A' <= c <= 'Z' :
+     *         getCount(c) == old getCount(c) + other.getCount(c) </pre>
+     */
+    public void merge(LetterFrequencyAccumulator other) {
+        if (other == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        assert other != this;
+        for (int i = 0; i < ALPHABET_SIZE; ++i) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+    }
+
+    /**
+     * Remet tous les compteurs à zéro.
+     * @post <pre>
+     *     getTotal() == 0 </pre>
+     */
+    public void reset() {
+        for (int i = 0; i < ALPHABET_SIZE; ++i) {
+            counts[i] = 0;
+        }
+        total = 0;
+    }
+
+    // OUTILS
+
+    /**
+     * Compte le caractère c s'il s'agit d'une lettre non accentuée, ou d'une
+     *  lettre accentuée si foldAccents.
+     */
+    private void count(char c) {
+        if (SubstCipher.isNonAccentedLetter(c)) {
+            counts[(c | 0x20) - 'a'] += 1;
+            total += 1;
+        } else if (foldAccents) {
+            int rank = AccentFolding.letterRank(c);
+            if (rank >= 0) {
+                counts[rank] += 1;
+                total += 1;
+            }
+        }
+    }
+}
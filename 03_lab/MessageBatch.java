@@ -0,0 +1,156 @@
+import java.util.List;
+
+/**
+ * Un lot de messages rangés bout à bout dans un unique tableau de caractères
+ *  (l'arène), le i-ème message occupant getChars()[getOffsets()[i] ..
+ *  getOffsets()[i + 1][.
+ * Ce format permet à Cipher.encodeAll et Cipher.decodeAll de traiter un grand
+ *  nombre de messages courts sans allouer d'objet par message, en parcourant
+ *  une mémoire contiguë.
+ * Le lot partage ses tableaux avec celui qui l'a construit et avec ceux qui
+ *  les obtiennent par getChars() et getOffsets() : ils ne doivent pas être
+ *  modifiés tant que le lot est utilisé.
+ * @inv <pre>
+ *     getMessageCount() >= 0
+ *     getOffsets().length == getMessageCount() + 1
+ *     getOffsets()[0] == 0
+ *     forall i, 0 <= i < getMessageCount() :
+ *         getOffsets()[i] <= getOffsets()[i + 1]
+ *     getOffsets()[getMessageCount()] <= getChars().length </pre>
+ */
+public class MessageBatch {
+
+    // ATTRIBUTS
+
+    /**
+     * L'arène contenant les messages bout à bout.
+     */
+    private final char[] chars;
+
+    /**
+     * Les indices de début des messages dans chars, suivis de l'indice de
+     *  fin du dernier message.
+     */
+    private final int[] offsets;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Un lot formé des messages de chars délimités par offsets. Les tableaux
+     *  ne sont pas copiés.
+     * @pre <pre>
+     *     chars != null && offsets != null
+     *     offsets.length >= 1 && offsets[0] == 0
+     *     forall i, 0 <= i < offsets.length - 1 : offsets[i] <= offsets[i + 1]
+     *     offsets[offsets.length - 1] <= chars.length </pre>
+     * @post <pre>
+     *     getChars() == chars
+     *     getOffsets() == offsets </pre>
+     */
+    public MessageBatch(char[] chars, int[] offsets) {
+        if (chars == null || offsets == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        checkOffsets(offsets, chars.length);
+        this.chars = chars;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Le lot formé des messages de la liste messages, dans l'ordre.
+     * @pre <pre>
+     *     messages != null
+     *     aucun élément de messages n'est null </pre>
+     * @post <pre>
+     *     result.getMessageCount() == messages.size()
+     *     forall i, 0 <= i < messages.size() :
+     *         result.getMessage(i).equals(messages.get(i)) </pre>
+     */
+    public static MessageBatch pack(List<String> messages) {
+        if (messages == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        int[] offsets = new int[messages.size() + 1];
+        int i = 0;
+        for (String m : messages) {
+            offsets[i + 1] = Math.addExact(offsets[i], m.length());
+            i += 1;
+        }
+        char[] chars = new char[offsets[messages.size()]];
+        i = 0;
+        for (String m : messages) {
+            m.getChars(0, m.length(), chars, offsets[i]);
+            i += 1;
+        }
+        return new MessageBatch(chars, offsets);
+    }
+
+    // REQUETES
+
+    /**
+     * Le nombre de messages de ce lot.
+     */
+    public int getMessageCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Le i-ème message de ce lot.
+     * @pre <pre>
+     *     0 <= i < getMessageCount() </pre>
+     * @post <pre>
+     *     result.equals(new String(getChars(), getOffsets()[i],
+     *         getOffsets()[i + 1] - getOffsets()[i])) </pre>
+     */
+    public String getMessage(int i) {
+        if (i < 0 || i >= getMessageCount()) {
+            throw new IndexOutOfBoundsException("message " + i);
+        }
+        return new String(chars, offsets[i], offsets[i + 1] - offsets[i]);
+    }
+
+    /**
+     * L'arène de ce lot (non copiée).
+     */
+    public char[] getChars() {
+        return chars;
+    }
+
+    /**
+     * Les bornes des messages de ce lot (non copiées).
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * Une représentation sous forme de chaîne de ce lot.
+     * @post
+     *     result.equals("MessageBatch[messages:" + getMessageCount()
+     *         + ";chars:" + getOffsets()[getMessageCount()] + "]")
+     */
+    public String toString() {
+        return "MessageBatch[messages:" + getMessageCount()
+                + ";chars:" + offsets[getMessageCount()] + "]";
+    }
+
+    // OUTILS
+
+    /**
+     * Vérifie que offsets délimite des messages d'une arène de length
+     *  caractères.
+     * @throws IllegalArgumentException si ce n'est pas le cas
+     */
+    static void checkOffsets(int[] offsets, int length) {
+        if (offsets.length == 0 || offsets[0] != 0
+                || offsets[offsets.length - 1] > length) {
+            throw new IllegalArgumentException("bornes de messages invalides");
+        }
+        for (int i = 0; i < offsets.length - 1; ++i) {
+            if (offsets[i] > offsets[i + 1]) {
+                throw new IllegalArgumentException(
+                        "bornes de messages non croissantes");
+            }
+        }
+    }
+}
@@ -0,0 +1,273 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Une table de log-probabilités des quadrigrammes (suites de quatre lettres
+ *  non accentuées consécutives, sans tenir compte de la casse ni des autres
+ *  caractères) d'une langue, servant à évaluer la vraisemblance d'un texte.
+ * Les ALPHABET_SIZE^4 valeurs sont rangées dans un FloatBuffer, le
+ *  quadrigramme de rangs (a, b, c, d) étant à l'indice index(a, b, c, d).
+ *  Un quadrigramme jamais observé reçoit la valeur plancher getFloor().
+ * Une table apprise par train est rangée hors du tas (tampon direct) ; une
+ *  table chargée par load est projetée en mémoire depuis son fichier, sans
+ *  copie. Dans les deux cas les 456 976 valeurs ne pèsent pas sur le
+ *  ramasse-miettes, et plusieurs processus peuvent partager la même table
+ *  projetée.
+ * Le format binaire écrit par save et lu par load est, en petit-boutiste :
+ * <pre>
+ *     int   MAGIC
+ *     int   VERSION
+ *     int   ALPHABET_SIZE
+ *     float getFloor()
+ *     float logProbability(i), pour i de 0 à SIZE - 1 </pre>
+ * @inv <pre>
+ *     forall i, 0 <= i < SIZE : logProbability(i) <= 0 </pre>
+ */
+public class QuadgramTable {
+
+    // ATTRIBUTS STATIQUES
+
+    /**
+     * Taille de l'alphabet.
+     */
+    public static final int ALPHABET_SIZE = SubstCipher.ALPHABET_SIZE;
+
+    /**
+     * Nombre de quadrigrammes possibles.
+     */
+    public static final int SIZE =
+            ALPHABET_SIZE * ALPHABET_SIZE * ALPHABET_SIZE * ALPHABET_SIZE;
+
+    /**
+     * Nombre magique en tête des fichiers de table ("QGRM").
+     */
+    public static final int MAGIC = 0x4D524751;
+
+    /**
+     * Version du format des fichiers de table.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Taille (en octets) de l'en-tête des fichiers de table.
+     */
+    private static final int HEADER_SIZE = 16;
+
+    // ATTRIBUTS
+
+    /**
+     * Les log-probabilités (en base 10) des quadrigrammes.
+     */
+    private final FloatBuffer logProbabilities;
+
+    /**
+     * La log-probabilité attribuée aux quadrigrammes jamais observés.
+     */
+    private final float floor;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Une table de log-probabilités logProbabilities (non copiées) et de
+     *  plancher floor.
+     * @pre <pre>
+     *     logProbabilities != null && logProbabilities.length == SIZE </pre>
+     */
+    public QuadgramTable(float[] logProbabilities, float floor) {
+        this(logProbabilities == null ? null
+                : FloatBuffer.wrap(logProbabilities), floor);
+    }
+
+    /**
+     * Une table dont les log-probabilités sont les SIZE valeurs de
+     *  logProbabilities à partir de l'indice 0 (tampon non copié, pouvant
+     *  être direct ou projeté en mémoire) et de plancher floor.
+     * @pre <pre>
+     *     logProbabilities != null && logProbabilities.limit() == SIZE </pre>
+     */
+    public QuadgramTable(FloatBuffer logProbabilities, float floor) {
+        if (logProbabilities == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        if (logProbabilities.limit() != SIZE) {
+            throw new IllegalArgumentException("la table doit avoir " + SIZE
+                    + " entrées");
+        }
+        this.logProbabilities = logProbabilities;
+        this.floor = floor;
+    }
+
+    /**
+     * La table contenue dans le fichier file (au format décrit plus haut),
+     *  projetée en mémoire en lecture seule.
+     * @pre <pre>
+     *     file != null </pre>
+     * @throws IOException si le fichier ne peut être lu ou n'est pas une
+     *  table de quadrigrammes
+     */
+    public static QuadgramTable load(Path file) throws IOException {
+        if (file == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long expected = HEADER_SIZE + 4L * SIZE;
+            if (in.size() != expected) {
+                throw new IOException(file + " : taille " + in.size()
+                        + " au lieu de " + expected);
+            }
+            ByteBuffer map = in.map(FileChannel.MapMode.READ_ONLY, 0, expected)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION
+                    || map.getInt(8) != ALPHABET_SIZE) {
+                throw new IOException(file
+                        + " n'est pas une table de quadrigrammes");
+            }
+            float floor = map.getFloat(12);
+            map.position(HEADER_SIZE);
+            return new QuadgramTable(map.slice()
+                    .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer(), floor);
+        }
+    }
+
+    /**
+     * La table des quadrigrammes du corpus corpus : chaque quadrigramme
+     *  observé n fois parmi total reçoit log10(n / total), les autres
+     *  log10(0.01 / total).
+     * @pre <pre>
+     *     corpus != null
+     *     corpus contient au moins quatre lettres non accentuées </pre>
+     */
+    public static QuadgramTable train(CharSequence corpus) {
+        if (corpus == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        long[] counts = new long[SIZE];
+        int window = 0;
+        int letters = 0;
+        for (int i = 0; i < corpus.length(); ++i) {
+            char c = corpus.charAt(i);
+            if (SubstCipher.isNonAccentedLetter(c)) {
+                window = (window * ALPHABET_SIZE + (c | 0x20) - 'a') % SIZE;
+                letters += 1;
+                if (letters >= 4) {
+                    counts[window] += 1;
+                }
+            }
+        }
+        return fromCounts(counts);
+    }
+
+    /**
+     * La table des quadrigrammes du corpus lu sur in (qui n'est pas fermé),
+     *  calculée comme par train(CharSequence).
+     * @pre <pre>
+     *     in != null </pre>
+     */
+    public static QuadgramTable train(Reader in) throws IOException {
+        if (in == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        StringBuilder corpus = new StringBuilder();
+        char[] buffer = new char[8192];
+        int n = in.read(buffer);
+        while (n != -1) {
+            corpus.append(buffer, 0, n);
+            n = in.read(buffer);
+        }
+        return train(corpus);
+    }
+
+    // REQUETES
+
+    /**
+     * L'indice du quadrigramme de rangs (a, b, c, d) dans la table.
+     * @pre <pre>
+     *     0 <= a, b, c, d < ALPHABET_SIZE </pre>
+     * @post <pre>
+     *     0 <= result < SIZE </pre>
+     */
+    public static int index(int a, int b, int c, int d) {
+        return ((a * ALPHABET_SIZE + b) * ALPHABET_SIZE + c) * ALPHABET_SIZE
+                + d;
+    }
+
+    /**
+     * La log-probabilité (en base 10) du quadrigramme d'indice index.
+     * @pre <pre>
+     *     0 <= index < SIZE </pre>
+     */
+    public float logProbability(int index) {
+        return logProbabilities.get(index);
+    }
+
+    /**
+     * La log-probabilité attribuée aux quadrigrammes jamais observés.
+     */
+    public float getFloor() {
+        return floor;
+    }
+
+    // COMMANDES
+
+    /**
+     * Écrit cette table dans le fichier file (créé ou écrasé), au format
+     *  décrit plus haut.
+     * @pre <pre>
+     *     file != null </pre>
+     * @post <pre>
+     *     load(file) est une table égale à celle-ci </pre>
+     */
+    public void save(Path file) throws IOException {
+        if (file == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(HEADER_SIZE + 4 * SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(ALPHABET_SIZE)
+                .putFloat(floor);
+        for (int i = 0; i < SIZE; ++i) {
+            buffer.putFloat(logProbabilities.get(i));
+        }
+        buffer.flip();
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        }
+    }
+
+    // OUTILS
+
+    /**
+     * La table correspondant aux nombres d'occurrences counts, rangée dans
+     *  un tampon direct.
+     * @pre <pre>
+     *     counts.length == SIZE
+     *     la somme des counts[i] est strictement positive </pre>
+     */
+    private static QuadgramTable fromCounts(long[] counts) {
+        long total = 0;
+        for (long n : counts) {
+            total += n;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException(
+                    "le corpus ne contient aucun quadrigramme");
+        }
+        float floor = (float) Math.log10(0.01 / total);
+        FloatBuffer logProbabilities = ByteBuffer.allocateDirect(4 * SIZE)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        for (int i = 0; i < SIZE; ++i) {
+            logProbabilities.put(i, counts[i] == 0
+                    ? floor : (float) Math.log10((double) counts[i] / total));
+        }
+        return new QuadgramTable(logProbabilities, floor);
+    }
+}
@@ -0,0 +1,379 @@
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Un casseur de décalage circulaire par force brute : les ALPHABET_SIZE
+ *  décalages possibles d'un message chiffré par SubstCipher sont tous
+ *  essayés, et chaque déchiffré candidat est noté par la somme des
+ *  log-probabilités de ses quadrigrammes selon une QuadgramTable.
+ * Contrairement à SubstCipher.guessShiftFrom, qui suppose que 'E' est la
+ *  lettre la plus fréquente, cette notation reste fiable sur des textes
+ *  courts.
+ * Les 26 candidats sont notés en un seul parcours du message, sans
+ *  construire aucun déchiffré ni allouer de mémoire par quadrigramme ; les
+ *  longs messages sont découpés et notés en parallèle, et les lots de
+ *  messages sont répartis entre plusieurs threads.
+ * Un casseur n'a pas d'état modifiable et peut être partagé entre threads.
+ */
+public class ShiftCracker {
+
+    // ATTRIBUTS STATIQUES
+
+    /**
+     * Taille de l'alphabet.
+     */
+    public static final int ALPHABET_SIZE = SubstCipher.ALPHABET_SIZE;
+
+    /**
+     * Taille (en caractères) au-delà de laquelle un message est découpé et
+     *  noté en parallèle.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    /**
+     * Nombre de messages d'un lot notés par une même tâche.
+     */
+    private static final int BATCH_CHUNK_SIZE = 1024;
+
+    /**
+     * MINUS[r - k + ALPHABET_SIZE] == (r - k) mod ALPHABET_SIZE, pour
+     *  0 <= r, k < ALPHABET_SIZE : évite un modulo par lettre et par
+     *  décalage.
+     */
+    private static final int[] MINUS = buildMinus();
+
+    // ATTRIBUTS
+
+    /**
+     * La table des quadrigrammes de la langue attendue.
+     */
+    private final QuadgramTable table;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Un casseur notant les candidats selon table.
+     * @pre <pre>
+     *     table != null </pre>
+     * @post <pre>
+     *     getTable() == table </pre>
+     */
+    public ShiftCracker(QuadgramTable table) {
+        if (table == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        this.table = table;
+    }
+
+    // REQUETES
+
+    /**
+     * La table des quadrigrammes de ce casseur.
+     */
+    public QuadgramTable getTable() {
+        return table;
+    }
+
+    /**
+     * Note les ALPHABET_SIZE déchiffrés candidats de text : scores[k] reçoit
+     *  la somme des log-probabilités des quadrigrammes de text décalé de -k.
+     *  Aucun objet n'est alloué.
+     * @pre <pre>
+     *     text != null && scores != null
+     *     scores.length == ALPHABET_SIZE </pre>
+     * @post <pre>
+     *     forall k, 0 <= k < ALPHABET_SIZE :
+     *         scores[k] == note du texte text décalé de -k </pre>
+     */
+    public void score(CharSequence text, float[] scores) {
+        if (text == null || scores == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        assert scores.length == ALPHABET_SIZE;
+        Arrays.fill(scores, 0);
+        score(text, 0, text.length(), text.length(), scores);
+    }
+
+    /**
+     * Les ALPHABET_SIZE décalages possibles de text, du plus probable au
+     *  moins probable. La confiance de chaque estimation est la probabilité
+     *  a posteriori du décalage, obtenue en normalisant les vraisemblances
+     *  10^score des candidats.
+     * Au-delà de PARALLEL_THRESHOLD caractères, text est découpé en morceaux
+     *  notés en parallèle.
+     * @pre <pre>
+     *     text != null </pre>
+     * @post <pre>
+     *     result.length == ALPHABET_SIZE
+     *     result[0].getShift() est le décalage le plus probable
+     *     forall i, 0 < i < ALPHABET_SIZE :
+     *         result[i - 1].getConfidence() >= result[i].getConfidence()
+     * </pre>
+     */
+    public ShiftGuess[] crack(String text) {
+        if (text == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        float[] scores;
+        if (text.length() > PARALLEL_THRESHOLD) {
+            scores = ForkJoinPool.commonPool().invoke(
+                    new ScoreTask(text, 0, text.length()));
+        } else {
+            scores = new float[ALPHABET_SIZE];
+            score(text, scores);
+        }
+        return rank(scores, text.length());
+    }
+
+    /**
+     * Le décalage le plus probable de text.
+     * @pre <pre>
+     *     text != null </pre>
+     * @post <pre>
+     *     0 <= result < ALPHABET_SIZE
+     *     result == crack(text)[0].getShift() </pre>
+     */
+    public int bestShift(String text) {
+        return crack(text)[0].getShift();
+    }
+
+    /**
+     * Range dans shifts[i] le décalage le plus probable du i-ème message de
+     *  batch. Les messages sont répartis entre les threads par paquets de
+     *  BATCH_CHUNK_SIZE ; chaque paquet réutilise un seul tableau de notes.
+     * @pre <pre>
+     *     batch != null && shifts != null
+     *     shifts.length >= batch.getMessageCount() </pre>
+     * @post <pre>
+     *     forall i, 0 <= i < batch.getMessageCount() :
+     *         shifts[i] == bestShift(batch.getMessage(i)) </pre>
+     */
+    public void crackAll(MessageBatch batch, int[] shifts) {
+        if (batch == null || shifts == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        if (shifts.length < batch.getMessageCount()) {
+            throw new IllegalArgumentException("tableau de résultats trop court");
+        }
+        ForkJoinPool.commonPool().invoke(
+                new BatchTask(batch, shifts, 0, batch.getMessageCount()));
+    }
+
+    // OUTILS
+
+    /**
+     * Ajoute à scores les notes des quadrigrammes de text dont la première
+     *  lettre est dans [from, to[ ; les lettres de text jusqu'à end peuvent
+     *  être lues pour compléter les derniers quadrigrammes.
+     * @pre <pre>
+     *     0 <= from <= to <= end <= text.length()
+     *     scores.length == ALPHABET_SIZE </pre>
+     */
+    private void score(CharSequence text, int from, int to, int end,
+            float[] scores) {
+        int a = 0;
+        int b = 0;
+        int c = 0;
+        int positionA = 0;
+        int positionB = 0;
+        int positionC = 0;
+        int letters = 0;
+        for (int i = from; i < end; ++i) {
+            char ch = text.charAt(i);
+            if (!SubstCipher.isNonAccentedLetter(ch)) {
+                continue;
+            }
+            int d = (ch | 0x20) - 'a';
+            if (letters >= 3) {
+                if (positionA >= to) {
+                    return;
+                }
+                addQuadgram(a, b, c, d, scores);
+            } else {
+                letters += 1;
+            }
+            a = b;
+            b = c;
+            c = d;
+            positionA = positionB;
+            positionB = positionC;
+            positionC = i;
+        }
+    }
+
+    /**
+     * Ajoute à scores[k], pour chaque décalage k, la log-probabilité du
+     *  quadrigramme de rangs (a, b, c, d) décalé de -k.
+     */
+    private void addQuadgram(int a, int b, int c, int d, float[] scores) {
+        for (int k = 0; k < ALPHABET_SIZE; ++k) {
+            int shift = ALPHABET_SIZE - k;
+            scores[k] += table.logProbability(QuadgramTable.index(
+                    MINUS[a + shift], MINUS[b + shift],
+                    MINUS[c + shift], MINUS[d + shift]));
+        }
+    }
+
+    /**
+     * Le décalage le plus probable selon scores.
+     * @pre <pre>
+     *     scores.length == ALPHABET_SIZE </pre>
+     */
+    private static int argMax(float[] scores) {
+        int m = 0;
+        for (int k = 1; k < ALPHABET_SIZE; ++k) {
+            if (scores[k] > scores[m]) {
+                m = k;
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Les estimations correspondant à scores, par confiance décroissante.
+     * @pre <pre>
+     *     scores.length == ALPHABET_SIZE </pre>
+     */
+    private static ShiftGuess[] rank(float[] scores, long length) {
+        float best = scores[argMax(scores)];
+        double[] weights = new double[ALPHABET_SIZE];
+        double sum = 0;
+        for (int k = 0; k < ALPHABET_SIZE; ++k) {
+            weights[k] = Math.pow(10, scores[k] - best);
+            sum += weights[k];
+        }
+        ShiftGuess[] result = new ShiftGuess[ALPHABET_SIZE];
+        for (int k = 0; k < ALPHABET_SIZE; ++k) {
+            result[k] = new ShiftGuess(k, Math.min(1, weights[k] / sum), length);
+        }
+        Arrays.sort(result, (x, y) ->
+                Double.compare(y.getConfidence(), x.getConfidence()));
+        return result;
+    }
+
+    /**
+     * Construit la table MINUS.
+     */
+    private static int[] buildMinus() {
+        int[] minus = new int[2 * ALPHABET_SIZE];
+        for (int i = 0; i < minus.length; ++i) {
+            minus[i] = i % ALPHABET_SIZE;
+        }
+        return minus;
+    }
+
+    /**
+     * Une tâche de notation des quadrigrammes de text commençant dans
+     *  [from, to[, coupée en deux tant que sa taille dépasse
+     *  PARALLEL_THRESHOLD ; les notes des deux moitiés sont additionnées.
+     */
+    private final class ScoreTask extends RecursiveTask<float[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String text;
+        private final int from;
+        private final int to;
+
+        ScoreTask(String text, int from, int to) {
+            this.text = text;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected float[] compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                float[] scores = new float[ALPHABET_SIZE];
+                score(text, from, to, text.length(), scores);
+                return scores;
+            }
+            int middle = (from + to) >>> 1;
+            ScoreTask left = new ScoreTask(text, from, middle);
+            left.fork();
+            float[] scores = new ScoreTask(text, middle, to).compute();
+            float[] leftScores = left.join();
+            for (int k = 0; k < ALPHABET_SIZE; ++k) {
+                scores[k] += leftScores[k];
+            }
+            return scores;
+        }
+    }
+
+    /**
+     * Une tâche de cassage des messages d'indices [from, to[ d'un lot,
+     *  coupée en deux tant qu'elle compte plus de BATCH_CHUNK_SIZE messages.
+     */
+    private final class BatchTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final MessageBatch batch;
+        private final int[] shifts;
+        private final int from;
+        private final int to;
+
+        BatchTask(MessageBatch batch, int[] shifts, int from, int to) {
+            this.batch = batch;
+            this.shifts = shifts;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > BATCH_CHUNK_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BatchTask(batch, shifts, from, middle),
+                        new BatchTask(batch, shifts, middle, to));
+                return;
+            }
+            CharBuffer chars = CharBuffer.wrap(batch.getChars());
+            int[] offsets = batch.getOffsets();
+            float[] scores = new float[ALPHABET_SIZE];
+            for (int i = from; i < to; ++i) {
+                Arrays.fill(scores, 0);
+                score(chars, offsets[i], offsets[i + 1], offsets[i + 1],
+                        scores);
+                shifts[i] = argMax(scores);
+            }
+        }
+    }
+
+    // TESTS
+
+    /**
+     * Casse le message args[1] à l'aide d'une table apprise sur le corpus
+     *  contenu dans le fichier args[0] (texte UTF-8), ou chargée depuis ce
+     *  fichier s'il porte l'extension ".qgm" (voir QuadgramTable.save).
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("usage : java ShiftCracker corpus.txt|table.qgm message");
+            return;
+        }
+        QuadgramTable table;
+        if (args[0].endsWith(".qgm")) {
+            table = QuadgramTable.load(Path.of(args[0]));
+        } else {
+            try (Reader in = new FileReader(args[0], StandardCharsets.UTF_8)) {
+                table = QuadgramTable.train(in);
+            }
+        }
+        ShiftCracker cracker = new ShiftCracker(table);
+        ShiftGuess[] guesses = cracker.crack(args[1]);
+        for (int i = 0; i < 3; ++i) {
+            SubstCipher t = new SubstCipher(-guesses[i].getShift());
+            t.buildShiftedTextFor(args[1]);
+            System.out.println(guesses[i] + " " + t.getLastShiftedText());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Le résultat d'une estimation du décalage d'un message chiffré par
+ *  SubstCipher : le décalage retenu, la confiance qu'on peut lui accorder et
+ *  le nombre de caractères du message effectivement examinés.
+ * Les instances sont immuables.
+ * @inv <pre>
+ *     -SubstCipher.ALPHABET_SIZE < getShift() < SubstCipher.ALPHABET_SIZE
+ *     0 <= getConfidence() <= 1
+ *     getSampledLength() >= 0 </pre>
+ */
+public class ShiftGuess {
+
+    // ATTRIBUTS
+
+    /**
+     * Le décalage estimé.
+     */
+    private final int shift;
+
+    /**
+     * La confiance associée au décalage estimé.
+     */
+    private final double confidence;
+
+    /**
+     * Le nombre de caractères examinés pour obtenir cette estimation.
+     */
+    private final long sampledLength;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Une estimation de décalage shift, de confiance confidence, obtenue en
+     *  examinant sampledLength caractères.
+     * @pre <pre>
+     *     -SubstCipher.ALPHABET_SIZE < shift < SubstCipher.ALPHABET_SIZE
+     *     0 <= confidence <= 1
+     *     sampledLength >= 0 </pre>
+     * @post <pre>
+     *     getShift() == shift
+     *     getConfidence() == confidence
+     *     getSampledLength() == sampledLength </pre>
+     */
+    public ShiftGuess(int shift, double confidence, long sampledLength) {
+        assert -SubstCipher.ALPHABET_SIZE < shift
+                && shift < SubstCipher.ALPHABET_SIZE;
+        assert 0 <= confidence && confidence <= 1;
+        assert sampledLength >= 0;
+        this.shift = shift;
+        this.confidence = confidence;
+        this.sampledLength = sampledLength;
+    }
+
+    // REQUETES
+
+    /**
+     * Le décalage estimé.
+     */
+    public int getShift() {
+        return shift;
+    }
+
+    /**
+     * La confiance associée au décalage estimé : la probabilité (selon une
+     *  approximation normale) que la lettre la plus fréquente de
+     *  l'échantillon soit réellement plus fréquente que la suivante,
+     *  corrigée des tests répétés au fil de l'échantillonnage (voir
+     *  SubstCipher.guessShiftFrom(String, double)).
+     */
+    public double getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * Le nombre de caractères examinés pour obtenir cette estimation.
+     */
+    public long getSampledLength() {
+        return sampledLength;
+    }
+
+    // OUTILS
+
+    /**
+     * Une représentation sous forme de chaîne de cette estimation.
+     * @post
+     *     result.equals("ShiftGuess[shift:" + getShift() + ";confidence:"
+     *         + getConfidence() + ";sampled:" + getSampledLength() + "]")
+     */
+    public String toString() {
+        return "ShiftGuess[shift:" + shift + ";confidence:" + confidence
+                + ";sampled:" + sampledLength + "]";
+    }
+}
@@ -0,0 +1,65 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Un noyau de décalage circulaire appliqué à des octets ASCII ou ISO-8859-1.
+ * Seules les lettres non accentuées (minuscules ou majuscules) sont décalées,
+ *  les autres octets sont recopiés tels quels. Le noyau sait aussi compter
+ *  ces lettres, pour l'analyse de fréquence de SubstCipher.guessShiftFrom.
+ * Les implémentations n'ont pas d'état : elles peuvent être partagées entre
+ *  plusieurs encodeurs et plusieurs threads.
+ */
+public interface ShiftKernel {
+
+    /**
+     * Décale circulairement de shift positions les length octets de src à
+     *  partir de srcPos, et les range dans dst à partir de dstPos.
+     * src et dst peuvent désigner le même tableau.
+     * @pre <pre>
+     *     -SubstCipher.ALPHABET_SIZE < shift < SubstCipher.ALPHABET_SIZE
+     *     src != null && dst != null
+     *     0 <= srcPos && srcPos + length <= src.length
+     *     0 <= dstPos && dstPos + length <= dst.length </pre>
+     * @post <pre>
+     *     forall i, 0 <= i < length :
+     *         Let bi ::= old src[srcPos + i]
+     *         dst[dstPos + i] == bi décalé de shift si bi est une lettre
+     *             non accentuée, bi sinon </pre>
+     */
+    void shift(int shift, byte[] src, int srcPos, byte[] dst, int dstPos,
+            int length);
+
+    /**
+     * Décale circulairement de shift positions les length octets de src à
+     *  partir de l'indice absolu srcPos, et les range dans dst à partir de
+     *  l'indice absolu dstPos. Les positions et limites des tampons ne sont
+     *  pas modifiées.
+     * @pre <pre>
+     *     -SubstCipher.ALPHABET_SIZE < shift < SubstCipher.ALPHABET_SIZE
+     *     src != null && dst != null
+     *     0 <= srcPos && srcPos + length <= src.limit()
+     *     0 <= dstPos && dstPos + length <= dst.limit() </pre>
+     * @post <pre>
+     *     forall i, 0 <= i < length :
+     *         Let bi ::= old src.get(srcPos + i)
+     *         dst.get(dstPos + i) == bi décalé de shift si bi est une lettre
+     *             non accentuée, bi sinon </pre>
+     */
+    void shift(int shift, ByteBuffer src, int srcPos, ByteBuffer dst,
+            int dstPos, int length);
+
+    /**
+     * Ajoute à counts le nombre d'occurrences de chaque lettre non accentuée
+     *  (minuscule ou majuscule) parmi les length octets de src à partir de
+     *  pos : counts[i] compte la (i+1)-ème lettre de l'alphabet.
+     * @pre <pre>
+     *     src != null && counts != null
+     *     counts.length == SubstCipher.ALPHABET_SIZE
+     *     0 <= pos && pos + length <= src.length </pre>
+     * @post <pre>
+     *     forall i, 0 <= i < SubstCipher.ALPHABET_SIZE :
+     *         counts[i] == old counts[i]
+     *             + nombre d'occurrences de 'a' + i ou 'A' + i dans
+     *               src[pos..pos + length[ </pre>
+     */
+    void countLetters(byte[] src, int pos, int length, int[] counts);
+}
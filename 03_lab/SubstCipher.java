@@ -1,9 +1,26 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
 /**
  * Un encodeur selon le principe du décalage circulaire (aussi appelé technique
  *  de "César").
  * La méthode <code>buildShiftedTextFor</code> permet d'encoder un message
  *  (décalage à droite) ou de le décoder (décalage à gauche) selon la valeur
  *  actuelle du décalage.
+ * Par défaut seules les lettres non accentuées sont décalées ; après
+ *  setAccentFolding(true), les lettres latines accentuées (caractères ou
+ *  octets ISO-8859-1) sont aussi décalées, repliées sur leur lettre de base
+ *  (voir CaesarCodec.of(int, boolean)).
+ * Les méthodes travaillant sur des octets ne construisent aucune chaîne :
+ *  elles permettent de chiffrer sur place un tampon réseau ASCII ou
+ *  ISO-8859-1.
  * @inv <pre>
  *     -ALPHABET_SIZE < getShift() < ALPHABET_SIZE
  *     getLastShiftedText() != null </pre>
@@ -22,6 +39,58 @@ public class SubstCipher {
      */
     public static final char MOST_FREQUENT_CHAR = 'E';
 
+    /**
+     * Taille maximale (en octets) d'une fenêtre de fichier projetée en
+     *  mémoire par buildShiftedFile.
+     */
+    private static final int MAP_WINDOW_SIZE = 1 << 26;
+
+    /**
+     * Taille (en caractères ou en octets) au-delà de laquelle le comptage des
+     *  lettres de guessShiftFrom est réparti sur plusieurs threads, chacun
+     *  comptant au plus cette taille.
+     */
+    private static final int HISTOGRAM_CHUNK_SIZE = 1 << 20;
+
+    /**
+     * Taille (en caractères) des blocs examinés successivement par
+     *  l'estimation par échantillonnage de guessShiftFrom.
+     */
+    private static final int SAMPLE_BLOCK_SIZE = 4096;
+
+    /**
+     * Nombre minimal de lettres à compter avant que l'estimation par
+     *  échantillonnage puisse s'arrêter.
+     */
+    private static final int MIN_SAMPLED_LETTERS = 64;
+
+    /**
+     * Propriété système permettant de choisir à l'exécution le noyau de
+     *  décalage des octets : "false" impose le noyau scalaire ; sinon le noyau
+     *  vectoriel est utilisé s'il est disponible.
+     */
+    public static final String VECTOR_PROPERTY = "substcipher.vector";
+
+    /**
+     * Le noyau scalaire de décalage des octets, fondé sur les tables de
+     *  CaesarCodec.
+     */
+    private static final ShiftKernel SCALAR_KERNEL = new ScalarShiftKernel();
+
+    /**
+     * Le noyau vectoriel de décalage des octets, ou null si le module
+     *  jdk.incubator.vector n'est pas disponible.
+     */
+    private static final ShiftKernel VECTOR_KERNEL = loadVectorKernel();
+
+    /**
+     * Le noyau de décalage des octets retenu selon VECTOR_PROPERTY.
+     */
+    private static final ShiftKernel BYTE_KERNEL =
+            VECTOR_KERNEL != null
+                    && !"false".equals(System.getProperty(VECTOR_PROPERTY))
+            ? VECTOR_KERNEL : SCALAR_KERNEL;
+
     // ATTRIBUTS
 
     /**
@@ -34,6 +103,11 @@ public class SubstCipher {
      */
     private String lastShiftedText;
 
+    /**
+     * Cet encodeur replie-t-il les accents avant de décaler ?
+     */
+    private boolean accentFolding;
+
     // CONSTRUCTEURS
 
     /**
@@ -79,6 +153,43 @@ public class SubstCipher {
         return currentShift;
     }
 
+    /**
+     * Cet encodeur décale-t-il aussi les lettres accentuées des textes de
+     *  caractères, repliées sur leur lettre de base ?
+     */
+    public boolean isAccentFolding() {
+        return accentFolding;
+    }
+
+    /**
+     * Le noyau scalaire (par tables) de décalage des octets.
+     * @post <pre>
+     *     result != null </pre>
+     */
+    public static ShiftKernel scalarKernel() {
+        return SCALAR_KERNEL;
+    }
+
+    /**
+     * Le noyau vectoriel de décalage des octets, ou null s'il n'est pas
+     *  disponible sur cette machine virtuelle (voir vector/VectorShiftKernel
+     *  pour sa compilation).
+     */
+    public static ShiftKernel vectorKernel() {
+        return VECTOR_KERNEL;
+    }
+
+    /**
+     * Le noyau utilisé par les méthodes de cet encodeur travaillant sur des
+     *  octets : vectorKernel() s'il est disponible et que VECTOR_PROPERTY ne
+     *  vaut pas "false", scalarKernel() sinon.
+     * @post <pre>
+     *     result != null </pre>
+     */
+    public static ShiftKernel byteKernel() {
+        return BYTE_KERNEL;
+    }
+
     // COMMANDES
 
     /**
@@ -95,6 +206,20 @@ public class SubstCipher {
         this.lastShiftedText = "";
     }
 
+    /**
+     * Active (folding == true) ou désactive le repli des accents par les
+     *  méthodes de cet encodeur travaillant sur des caractères. Le repli
+     *  perd les accents : décoder un texte encodé avec repli restitue le
+     *  texte replié (AccentFolding.fold).
+     * Les méthodes travaillant sur des octets lisent alors ceux-ci comme du
+     *  texte ISO-8859-1, et non UTF-8 ; elles n'utilisent plus byteKernel().
+     * @post <pre>
+     *     isAccentFolding() == folding </pre>
+     */
+    public void setAccentFolding(boolean folding) {
+        this.accentFolding = folding;
+    }
+
     /**
      * Construit une chaîne à partir de celle fournie en paramètre en décalant
      *  circulairement les caractères alphabétiques selon le décalage donné par
@@ -109,18 +234,180 @@ public class SubstCipher {
      *     forall i, 0 <= i < text.length() :
      *         Let ci ::= text.charAt(i)
      *             xi ::= getLastShiftedText().charAt(i)
-     *         isNonAccentedLetter(ci) ==> xi == ci décalé de getShift()
-     *         !isNonAccentedLetter(ci) ==> xi == ci </pre>
+     *         xi == CaesarCodec.of(getShift(), isAccentFolding())
+     *             .encode(ci) </pre>
      */
     public void buildShiftedTextFor(String text) {
-    assert text != null;
+        assert text != null;
 
-    StringBuilder result = new StringBuilder();
-    for (char c : text.toCharArray()) {
-        result.append(shiftChar(c));
+        this.lastShiftedText =
+                CaesarCodec.of(currentShift, accentFolding).encode(text);
     }
 
-    this.lastShiftedText = result.toString();
+    /**
+     * Décale circulairement, selon getShift(), les length caractères de src
+     *  à partir de srcPos et les range dans dst à partir de dstPos.
+     * Aucun objet n'est alloué et getLastShiftedText() n'est pas modifié ;
+     *  src et dst peuvent désigner le même tableau.
+     * @pre <pre>
+     *     src != null && dst != null
+     *     0 <= srcPos && srcPos + length <= src.length
+     *     0 <= dstPos && dstPos + length <= dst.length </pre>
+     * @post <pre>
+     *     forall i, 0 <= i < length :
+     *         Let ci ::= old src[srcPos + i]
+     *             xi ::= dst[dstPos + i]
+     *         xi == CaesarCodec.of(getShift(), isAccentFolding())
+     *             .encode(ci) </pre>
+     */
+    public void buildShiftedTextFor(char[] src, int srcPos,
+            char[] dst, int dstPos, int length) {
+        assert src != null && dst != null;
+        assert 0 <= srcPos && srcPos + length <= src.length;
+        assert 0 <= dstPos && dstPos + length <= dst.length;
+
+        CaesarCodec.of(currentShift, accentFolding)
+                .encode(src, srcPos, dst, dstPos, length);
+    }
+
+    /**
+     * Décale circulairement, selon getShift(), les caractères restants de src
+     *  et les range dans dst. Les positions de src et dst avancent du nombre
+     *  de caractères traités.
+     * Aucun objet n'est alloué et getLastShiftedText() n'est pas modifié.
+     * @pre <pre>
+     *     src != null && dst != null
+     *     dst.remaining() >= src.remaining() </pre>
+     * @post <pre>
+     *     !src.hasRemaining()
+     *     dst a reçu les caractères de src décalés de getShift() </pre>
+     */
+    public void buildShiftedTextFor(CharBuffer src, CharBuffer dst) {
+        assert src != null && dst != null;
+        assert dst.remaining() >= src.remaining();
+
+        CaesarCodec.of(currentShift, accentFolding).encode(src, dst);
+    }
+
+    /**
+     * Décale circulairement, selon getShift(), les octets restants de src
+     *  (texte ASCII ou ISO-8859-1) et les range dans dst, à l'aide de
+     *  byteKernel(). Les positions de src et dst avancent du nombre d'octets
+     *  traités.
+     * Aucun objet n'est alloué et getLastShiftedText() n'est pas modifié ;
+     *  src et dst peuvent être des fichiers projetés en mémoire.
+     * @pre <pre>
+     *     src != null && dst != null
+     *     dst.remaining() >= src.remaining() </pre>
+     * @post <pre>
+     *     !src.hasRemaining()
+     *     dst a reçu les octets de src décalés de getShift() </pre>
+     */
+    public void buildShiftedTextFor(ByteBuffer src, ByteBuffer dst) {
+        assert src != null && dst != null;
+        assert dst.remaining() >= src.remaining();
+
+        int length = src.remaining();
+        if (accentFolding) {
+            CaesarCodec.of(currentShift, true).encode(src, src.position(),
+                    dst, dst.position(), length);
+        } else {
+            BYTE_KERNEL.shift(currentShift, src, src.position(),
+                    dst, dst.position(), length);
+        }
+        src.position(src.position() + length);
+        dst.position(dst.position() + length);
+    }
+
+    /**
+     * Décale circulairement sur place, selon getShift(), les octets restants
+     *  de buffer (texte ASCII ou ISO-8859-1), à l'aide de byteKernel(). La
+     *  position de buffer avance jusqu'à sa limite.
+     * Aucun objet n'est alloué et getLastShiftedText() n'est pas modifié.
+     * @pre <pre>
+     *     buffer != null && !buffer.isReadOnly() </pre>
+     * @post <pre>
+     *     !buffer.hasRemaining()
+     *     les octets entre old buffer.position() et buffer.limit() sont
+     *         décalés de getShift() </pre>
+     */
+    public void buildShiftedTextFor(ByteBuffer buffer) {
+        assert buffer != null;
+
+        int pos = buffer.position();
+        if (accentFolding) {
+            CaesarCodec.of(currentShift, true).encode(buffer);
+        } else {
+            BYTE_KERNEL.shift(currentShift, buffer, pos, buffer, pos,
+                    buffer.remaining());
+            buffer.position(buffer.limit());
+        }
+    }
+
+    /**
+     * Décale circulairement, selon getShift(), les length octets de src
+     *  (texte ASCII ou ISO-8859-1) à partir de srcPos et les range dans dst
+     *  à partir de dstPos, à l'aide de byteKernel().
+     * Aucun objet n'est alloué et getLastShiftedText() n'est pas modifié ;
+     *  src et dst peuvent désigner le même tableau.
+     * @pre <pre>
+     *     src != null && dst != null
+     *     0 <= srcPos && srcPos + length <= src.length
+     *     0 <= dstPos && dstPos + length <= dst.length </pre>
+     * @post <pre>
+     *     forall i, 0 <= i < length :
+     *         Let bi ::= old src[srcPos + i]
+     *             xi ::= dst[dstPos + i]
+     *         bi est une lettre non accentuée ==> xi == bi décalé de getShift()
+     *         sinon ==> xi == bi </pre>
+     */
+    public void buildShiftedTextFor(byte[] src, int srcPos,
+            byte[] dst, int dstPos, int length) {
+        assert src != null && dst != null;
+        assert 0 <= srcPos && srcPos + length <= src.length;
+        assert 0 <= dstPos && dstPos + length <= dst.length;
+
+        if (accentFolding) {
+            CaesarCodec.of(currentShift, true)
+                    .encode(src, srcPos, dst, dstPos, length);
+        } else {
+            BYTE_KERNEL.shift(currentShift, src, srcPos, dst, dstPos, length);
+        }
+    }
+
+    /**
+     * Écrit dans le fichier target le contenu du fichier source (texte ASCII
+     *  ou ISO-8859-1) décalé circulairement selon getShift().
+     * Les deux fichiers sont projetés en mémoire par fenêtres d'au plus
+     *  MAP_WINDOW_SIZE octets et le décalage est appliqué directement d'une
+     *  projection à l'autre, sans copie dans le tas. target est créé ou
+     *  écrasé ; getLastShiftedText() n'est pas modifié.
+     * @pre <pre>
+     *     source != null && target != null
+     *     source et target désignent des fichiers distincts </pre>
+     * @post <pre>
+     *     target contient le décalage de getShift() du contenu de source
+     * </pre>
+     */
+    public void buildShiftedFile(Path source, Path target) throws IOException {
+        if (source == null || target == null) {
+            throw new AssertionError("la référence est vide");
+        }
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(target,
+                        StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            for (long pos = 0; pos < size; pos += MAP_WINDOW_SIZE) {
+                int length = (int) Math.min(MAP_WINDOW_SIZE, size - pos);
+                MappedByteBuffer src =
+                        in.map(FileChannel.MapMode.READ_ONLY, pos, length);
+                MappedByteBuffer dst =
+                        out.map(FileChannel.MapMode.READ_WRITE, pos, length);
+                buildShiftedTextFor(src, dst);
+            }
+        }
     }
 
 
@@ -173,29 +460,6 @@ public class SubstCipher {
                 + lastShiftedText + "]";
     }
 
-    /**
-     * Le caractère c décalé circulairement de shift positions dans l'alphabet.
-     * @pre <pre>
-     *     isNonAccentedLetter(c) </pre>
-     * @post <pre>
-     *     currentShift >= 0
-     *         ==> result == décalé vers la droite de c
-     *     currentShift < 0
-     *         ==> result == décalé vers la gauche de c </pre>
-     */
-    private char shiftChar(char c) {
-        if (!isNonAccentedLetter(c)){
-            return c;
-        }
-        char base;
-        if (Character.isUpperCase(c)){
-            base = 'A';
-        }else{
-            base = 'a';
-        }
-        return (char) (base + (c - base + currentShift + ALPHABET_SIZE) % ALPHABET_SIZE);
-    }
-
         /**
      * renvoie la position du caractère c.
      * @pre:
@@ -235,6 +499,23 @@ public class SubstCipher {
      *                     % ALPHABET_SIZE </pre>
      */
     public static int guessShiftFrom(String text) {
+        return guessShiftFrom(text, false);
+    }
+
+    /**
+     * Calcule un décalage à partir du message text selon l'algorithme de
+     *  guessShiftFrom(String), les lettres latines accentuées étant de plus
+     *  comptées, si foldAccents, comme leur lettre de base
+     *  (AccentFolding.letterRank) : les 'é', 'è' et 'ê' d'un texte français
+     *  comptent ainsi pour 'e'.
+     * @pre <pre>
+     *     text != null </pre>
+     * @post <pre>
+     *     !foldAccents ==> result == guessShiftFrom(text)
+     *     foldAccents ==> result == guessShiftFrom(AccentFolding.fold(text))
+     * </pre>
+     */
+    public static int guessShiftFrom(String text, boolean foldAccents) {
         if (text == null) {
             throw new AssertionError();
         }
@@ -242,7 +523,103 @@ public class SubstCipher {
         if (text.equals("")) {
             return 0;
         }
-        return guessShiftFromNonEmptyMessage(text);
+        return guessShiftFromNonEmptyMessage(text, foldAccents);
+    }
+
+    /**
+     * Calcule un décalage à partir du message text, donné sous forme
+     *  d'octets ASCII ou ISO-8859-1, selon le même algorithme que
+     *  guessShiftFrom(String). Le comptage utilise byteKernel() et est
+     *  réparti sur plusieurs threads pour les grands messages.
+     * @pre <pre>
+     *     text != null </pre>
+     * @post <pre>
+     *     text.length == 0 ==> result == 0
+     *     text.length > 0
+     *         ==> Let f ::= la lettre la plus fréquente du message
+     *             result == f - MOST_FREQUENT_CHAR </pre>
+     */
+    public static int guessShiftFrom(byte[] text) {
+        if (text == null) {
+            throw new AssertionError();
+        }
+
+        if (text.length == 0) {
+            return 0;
+        }
+        int[] t = new HistogramTask(null, text, 0, text.length, false)
+                .invoke();
+        return max(t) - alphaPos(MOST_FREQUENT_CHAR);
+    }
+
+    /**
+     * Estime un décalage à partir du message text, par échantillonnage.
+     * Le message est découpé en blocs de SAMPLE_BLOCK_SIZE caractères qui
+     *  sont examinés dans un ordre qui les répartit uniformément sur tout le
+     *  message (les premiers blocs examinés sont éloignés les uns des autres,
+     *  puis l'échantillon se densifie). Après 1, 2, 4, 8... blocs examinés,
+     *  et après le dernier, on mesure l'avance n1 - n2 de la lettre la plus
+     *  fréquente sur la suivante et la probabilité
+     *  p = 2 * (1 - Phi((n1 - n2) / sqrt(n1 + n2))) que cette avance soit
+     *  due au hasard (le test est bilatéral, car la lettre en tête n'est
+     *  connue qu'après le comptage). Comme le test est répété, le j-ième ne
+     *  dispose que de la part (1 - confidence) / 2^j du risque d'erreur
+     *  (correction de Bonferroni, le total restant inférieur à
+     *  1 - confidence) : la confiance retenue est 1 - 2^j * p, et l'examen
+     *  s'arrête dès qu'elle atteint confidence.
+     * Si ce seuil n'est jamais atteint, tout le message est examiné et le
+     *  décalage retourné est celui de guessShiftFrom(text) (ou 0 si le
+     *  message ne contient aucune lettre non accentuée).
+     * @pre <pre>
+     *     text != null
+     *     0 < confidence < 1 </pre>
+     * @post <pre>
+     *     result != null
+     *     result.getConfidence() >= confidence
+     *         || result.getShift() == guessShiftFrom(text) </pre>
+     */
+    public static ShiftGuess guessShiftFrom(String text, double confidence) {
+        return guessShiftFrom(text, confidence, false);
+    }
+
+    /**
+     * Estime un décalage à partir du message text, par échantillonnage selon
+     *  l'algorithme de guessShiftFrom(String, double), les lettres latines
+     *  accentuées étant de plus comptées comme leur lettre de base si
+     *  foldAccents.
+     * @pre <pre>
+     *     text != null
+     *     0 < confidence < 1 </pre>
+     * @post <pre>
+     *     result != null
+     *     result.getConfidence() >= confidence
+     *         || result.getShift() == guessShiftFrom(text, foldAccents) </pre>
+     */
+    public static ShiftGuess guessShiftFrom(String text, double confidence,
+            boolean foldAccents) {
+        if (text == null) {
+            throw new AssertionError();
+        }
+        return sampleShift(text, text.length(), confidence, foldAccents);
+    }
+
+    /**
+     * Estime un décalage à partir du message text, donné sous forme
+     *  d'octets ASCII ou ISO-8859-1, par échantillonnage selon le même
+     *  algorithme que guessShiftFrom(String, double).
+     * @pre <pre>
+     *     text != null
+     *     0 < confidence < 1 </pre>
+     * @post <pre>
+     *     result != null
+     *     result.getConfidence() >= confidence
+     *         || result.getShift() == guessShiftFrom(text) </pre>
+     */
+    public static ShiftGuess guessShiftFrom(byte[] text, double confidence) {
+        if (text == null) {
+            throw new AssertionError();
+        }
+        return sampleShift(text, text.length, confidence, false);
     }
 
     /**
@@ -256,6 +633,8 @@ public class SubstCipher {
      * </ul>
      * En cas d'égalité de fréquence de plusieurs lettres du message, la plus
      *  petite parmi ces lettres (pour l'ordre alphabétique) est retournée.
+     * Si foldAccents, les lettres accentuées sont comptées comme leur lettre
+     *  de base.
      * @pre <pre>
      *     text != null && !text.equals("")</pre>
      * @post <pre>
@@ -263,8 +642,9 @@ public class SubstCipher {
      *     result == ((f - MOST_FREQUENT_CHAR) + ALPHABET_SIZE) % ALPHABET_SIZE
      * </pre>
      */
-        private static int guessShiftFromNonEmptyMessage(String text) {
-        int t[] = charOcc(text);
+        private static int guessShiftFromNonEmptyMessage(String text,
+                boolean foldAccents) {
+        int t[] = charOcc(text, foldAccents);
         int m = max(t);
         return m - alphaPos(MOST_FREQUENT_CHAR);
     }
@@ -283,17 +663,237 @@ public class SubstCipher {
     }
     /**
      * renvoie un tableau contenant le nombre d'occurence de chaque lettre non
-     *  accentuée de la chaine de caractère donnée en paramètre.
+     *  accentuée de la chaine de caractère donnée en paramètre (les lettres
+     *  accentuées comptant pour leur lettre de base si foldAccents).
      */
-    private  static int[] charOcc(String s){
+    private  static int[] charOcc(String s, boolean foldAccents){
+        if (s.length() > HISTOGRAM_CHUNK_SIZE) {
+            return ForkJoinPool.commonPool().invoke(
+                    new HistogramTask(s, null, 0, s.length(), foldAccents));
+        }
         int t[] = new int[ALPHABET_SIZE];
-        for(int i = 0; i < s.length(); ++i){
+        countLetters(s, 0, s.length(), t, foldAccents);
+        return t;
+    }
+
+    /**
+     * Ajoute à t le nombre d'occurrences de chaque lettre non accentuée de
+     *  s entre from (inclus) et to (exclu).
+     * Le rang d'une lettre est obtenu en forçant le bit des minuscules
+     *  (0x20), sans passer par alphaPos. Si foldAccents, les lettres
+     *  accentuées sont aussi comptées, au rang de leur lettre de base.
+     * @pre <pre>
+     *     s != null && t.length == ALPHABET_SIZE
+     *     0 <= from <= to <= s.length() </pre>
+     */
+    private static void countLetters(String s, int from, int to, int[] t,
+            boolean foldAccents) {
+        for (int i = from; i < to; ++i) {
             char c = s.charAt(i);
-            if(isNonAccentedLetter(c)){
-                t[alphaPos(c)] += 1;
+            if (isNonAccentedLetter(c)) {
+                t[(c | 0x20) - 'a'] += 1;
+            } else if (foldAccents) {
+                int rank = AccentFolding.letterRank(c);
+                if (rank >= 0) {
+                    t[rank] += 1;
+                }
             }
         }
-        return t;
+    }
+
+    /**
+     * Estimation par échantillonnage du décalage de text (une String ou un
+     *  byte[] de longueur length) ; voir guessShiftFrom(String, double,
+     *  boolean).
+     * Les blocs sont visités dans l'ordre de van der Corput : le k-ième bloc
+     *  examiné est celui dont l'indice est k écrit à l'envers en binaire,
+     *  sur autant de bits qu'il en faut pour numéroter tous les blocs.
+     * Le test n'est fait qu'aux tailles d'échantillon doublées : un test
+     *  après chaque bloc consommerait le risque d'erreur bien plus vite
+     *  pour un gain de quelques blocs seulement.
+     * @pre <pre>
+     *     text instanceof String || text instanceof byte[]
+     *     0 < confidence < 1 </pre>
+     */
+    private static ShiftGuess sampleShift(Object text, int length,
+            double confidence, boolean foldAccents) {
+        if (!(0 < confidence && confidence < 1)) {
+            throw new IllegalArgumentException(
+                    "La confiance doit être dans l'intervalle (0, 1)");
+        }
+        LetterFrequencyAccumulator acc =
+                new LetterFrequencyAccumulator(foldAccents);
+        int blocks = (length + SAMPLE_BLOCK_SIZE - 1) / SAMPLE_BLOCK_SIZE;
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(blocks - 1, 1));
+        long sampled = 0;
+        int examined = 0;
+        int looks = 0;
+        double reached = 0;
+        for (int k = 0; k < 1 << bits; ++k) {
+            int block = Integer.reverse(k) >>> (32 - bits);
+            if (block >= blocks) {
+                continue;
+            }
+            int from = block * SAMPLE_BLOCK_SIZE;
+            int n = Math.min(SAMPLE_BLOCK_SIZE, length - from);
+            if (text instanceof String) {
+                acc.feed((String) text, from, n);
+            } else {
+                acc.feed(ByteBuffer.wrap((byte[]) text, from, n));
+            }
+            sampled += n;
+            examined += 1;
+            if ((examined & (examined - 1)) == 0 || examined == blocks) {
+                looks += 1;
+                double risk = leadRisk(acc) * Math.pow(2, looks);
+                reached = Math.max(0, 1 - risk);
+                if (reached >= confidence
+                        && acc.getTotal() >= MIN_SAMPLED_LETTERS) {
+                    break;
+                }
+            }
+        }
+        return new ShiftGuess(acc.getBestShift(), reached, sampled);
+    }
+
+    /**
+     * La probabilité, selon l'approximation normale de la loi binomiale,
+     *  d'observer entre les deux lettres les plus fréquentes comptées par acc
+     *  un écart au moins aussi grand si elles étaient en fait également
+     *  fréquentes : 2 * (1 - Phi((n1 - n2) / sqrt(n1 + n2))), où n1 et n2
+     *  sont les deux plus grands nombres d'occurrences.
+     * @pre <pre>
+     *     acc != null </pre>
+     * @post <pre>
+     *     0 <= result <= 1 </pre>
+     */
+    private static double leadRisk(LetterFrequencyAccumulator acc) {
+        long first = 0;
+        long second = 0;
+        for (char c = 'A'; c <= 'Z'; ++c) {
+            long n = acc.getCount(c);
+            if (n > first) {
+                second = first;
+                first = n;
+            } else if (n > second) {
+                second = n;
+            }
+        }
+        if (first == 0) {
+            return 1;
+        }
+        return Math.min(1,
+                2 * normalCdf((second - first) / Math.sqrt(first + second)));
+    }
+
+    /**
+     * La fonction de répartition Phi de la loi normale centrée réduite en z,
+     *  calculée par l'approximation d'Abramowitz et Stegun (7.1.26) de la
+     *  fonction d'erreur, précise à 1.5e-7 près.
+     * @post <pre>
+     *     0 <= result <= 1 </pre>
+     */
+    private static double normalCdf(double z) {
+        double x = Math.abs(z) / Math.sqrt(2);
+        double t = 1 / (1 + 0.3275911 * x);
+        double erf = 1 - t * (0.254829592 + t * (-0.284496736
+                + t * (1.421413741 + t * (-1.453152027 + t * 1.061405429))))
+                * Math.exp(-x * x);
+        return z >= 0 ? (1 + erf) / 2 : (1 - erf) / 2;
+    }
+
+    /**
+     * Charge dynamiquement le noyau vectoriel, pour que cette classe reste
+     *  utilisable sans le module jdk.incubator.vector.
+     * @post <pre>
+     *     result == null <==> le noyau vectoriel n'est pas disponible </pre>
+     */
+    private static ShiftKernel loadVectorKernel() {
+        try {
+            return (ShiftKernel) Class.forName("VectorShiftKernel")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Le noyau scalaire de décalage des octets : une consultation de la
+     *  table de 256 octets de CaesarCodec.of(shift) par octet.
+     */
+    private static final class ScalarShiftKernel implements ShiftKernel {
+
+        public void shift(int shift, byte[] src, int srcPos, byte[] dst,
+                int dstPos, int length) {
+            CaesarCodec.of(shift).encode(src, srcPos, dst, dstPos, length);
+        }
+
+        public void shift(int shift, ByteBuffer src, int srcPos,
+                ByteBuffer dst, int dstPos, int length) {
+            CaesarCodec.of(shift).encode(src, srcPos, dst, dstPos, length);
+        }
+
+        public void countLetters(byte[] src, int pos, int length,
+                int[] counts) {
+            for (int i = pos; i < pos + length; ++i) {
+                int rank = (src[i] | 0x20) - 'a';
+                if (0 <= rank && rank < ALPHABET_SIZE) {
+                    counts[rank] += 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Une tâche de comptage des lettres non accentuées d'un message (chaîne
+     *  text ou octets bytes, l'autre référence étant null) entre from
+     *  (inclus) et to (exclu), les lettres accentuées du texte comptant pour
+     *  leur lettre de base si foldAccents. Au-delà de HISTOGRAM_CHUNK_SIZE, la plage est
+     *  coupée en deux ; chaque moitié remplit son propre tableau de
+     *  ALPHABET_SIZE compteurs, et les deux tableaux sont additionnés.
+     */
+    private static final class HistogramTask extends RecursiveTask<int[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String text;
+        private final byte[] bytes;
+        private final int from;
+        private final int to;
+        private final boolean foldAccents;
+
+        HistogramTask(String text, byte[] bytes, int from, int to,
+                boolean foldAccents) {
+            this.text = text;
+            this.bytes = bytes;
+            this.from = from;
+            this.to = to;
+            this.foldAccents = foldAccents;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (to - from <= HISTOGRAM_CHUNK_SIZE) {
+                int[] counts = new int[ALPHABET_SIZE];
+                if (bytes == null) {
+                    countLetters(text, from, to, counts, foldAccents);
+                } else {
+                    BYTE_KERNEL.countLetters(bytes, from, to - from, counts);
+                }
+                return counts;
+            }
+            int middle = (from + to) >>> 1;
+            HistogramTask left =
+                    new HistogramTask(text, bytes, from, middle, foldAccents);
+            left.fork();
+            int[] counts = new HistogramTask(text, bytes, middle, to,
+                    foldAccents).compute();
+            int[] leftCounts = left.join();
+            for (int i = 0; i < ALPHABET_SIZE; ++i) {
+                counts[i] += leftCounts[i];
+            }
+            return counts;
+        }
     }
 
 }
@@ -0,0 +1,170 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Un noyau de décalage circulaire vectorisé à l'aide de l'API Vector.
+ * Les lettres d'un vecteur entier d'octets sont repérées par des masques et
+ *  décalées en une seule fois ; les octets restants en fin de plage sont
+ *  traités par le noyau scalaire de SubstCipher.
+ * Cette classe nécessite le module incubateur jdk.incubator.vector, à la
+ *  compilation comme à l'exécution. Elle est donc rangée à part, dans le
+ *  répertoire vector, pour que le reste du paquetage se compile sans ce
+ *  module ; depuis 03_lab :
+ * <pre>
+ *     javac -d out *.java
+ *     javac --add-modules jdk.incubator.vector -cp out -d out vector/*.java
+ *     java --add-modules jdk.incubator.vector -cp out ... </pre>
+ * SubstCipher la charge dynamiquement et se replie sur le noyau scalaire si
+ *  elle n'a pas été compilée ou si le module est absent.
+ */
+public class VectorShiftKernel implements ShiftKernel {
+
+    // ATTRIBUTS STATIQUES
+
+    /**
+     * La forme de vecteur préférée de la plateforme.
+     */
+    private static final VectorSpecies<Byte> SPECIES =
+            ByteVector.SPECIES_PREFERRED;
+
+    /**
+     * Taille de l'alphabet.
+     */
+    private static final int ALPHABET_SIZE = SubstCipher.ALPHABET_SIZE;
+
+    // COMMANDES
+
+    public void shift(int shift, byte[] src, int srcPos, byte[] dst,
+            int dstPos, int length) {
+        assert -ALPHABET_SIZE < shift && shift < ALPHABET_SIZE;
+        byte k = (byte) ((shift + ALPHABET_SIZE) % ALPHABET_SIZE);
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            ByteVector v = ByteVector.fromArray(SPECIES, src, srcPos + i);
+            shiftLanes(v, k).intoArray(dst, dstPos + i);
+        }
+        SubstCipher.scalarKernel().shift(shift, src, srcPos + i,
+                dst, dstPos + i, length - i);
+    }
+
+    public void shift(int shift, ByteBuffer src, int srcPos, ByteBuffer dst,
+            int dstPos, int length) {
+        assert -ALPHABET_SIZE < shift && shift < ALPHABET_SIZE;
+        byte k = (byte) ((shift + ALPHABET_SIZE) % ALPHABET_SIZE);
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            ByteVector v = ByteVector.fromByteBuffer(SPECIES, src, srcPos + i,
+                    ByteOrder.nativeOrder());
+            shiftLanes(v, k).intoByteBuffer(dst, dstPos + i,
+                    ByteOrder.nativeOrder());
+        }
+        SubstCipher.scalarKernel().shift(shift, src, srcPos + i,
+                dst, dstPos + i, length - i);
+    }
+
+    public void countLetters(byte[] src, int pos, int length, int[] counts) {
+        assert counts.length == ALPHABET_SIZE;
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            ByteVector lower = ByteVector.fromArray(SPECIES, src, pos + i)
+                    .or((byte) 0x20);
+            VectorMask<Byte> letters =
+                    lower.compare(VectorOperators.GE, (byte) 'a')
+                    .and(lower.compare(VectorOperators.LE, (byte) 'z'));
+            if (letters.anyTrue()) {
+                for (int r = 0; r < ALPHABET_SIZE; ++r) {
+                    counts[r] += lower.eq((byte) ('a' + r)).trueCount();
+                }
+            }
+        }
+        SubstCipher.scalarKernel().countLetters(src, pos + i, length - i,
+                counts);
+    }
+
+    // OUTILS
+
+    /**
+     * Le vecteur v dont les lettres non accentuées sont décalées
+     *  circulairement de k positions à droite.
+     * On se ramène aux minuscules en forçant le bit 0x20 pour le test de
+     *  lettre et le calcul du rang ; la casse d'origine est conservée en
+     *  ajoutant à v la différence entre le nouveau rang et l'ancien.
+     * @pre <pre>
+     *     0 <= k < ALPHABET_SIZE </pre>
+     */
+    private static ByteVector shiftLanes(ByteVector v, byte k) {
+        ByteVector lower = v.or((byte) 0x20);
+        VectorMask<Byte> letters = lower.compare(VectorOperators.GE, (byte) 'a')
+                .and(lower.compare(VectorOperators.LE, (byte) 'z'));
+        ByteVector rank = lower.sub((byte) 'a');
+        ByteVector shifted = rank.add(k);
+        shifted = shifted.sub((byte) ALPHABET_SIZE,
+                shifted.compare(VectorOperators.GE, (byte) ALPHABET_SIZE));
+        return v.blend(v.add(shifted.sub(rank)), letters);
+    }
+
+    // TESTS
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 20;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        byte[] src = new byte[size];
+        for (int i = 0; i < size; ++i) {
+            src[i] = (byte) (' ' + (i * 31 + i / 7) % 95);
+        }
+        byte[] scalar = new byte[size];
+        byte[] vector = new byte[size];
+        ShiftKernel scalarKernel = SubstCipher.scalarKernel();
+        ShiftKernel vectorKernel = new VectorShiftKernel();
+        for (int shift = -ALPHABET_SIZE + 1; shift < ALPHABET_SIZE; ++shift) {
+            scalarKernel.shift(shift, src, 0, scalar, 0, size);
+            vectorKernel.shift(shift, src, 0, vector, 0, size);
+            if (!java.util.Arrays.equals(scalar, vector)) {
+                throw new AssertionError("résultats différents pour " + shift);
+            }
+        }
+        int[] scalarCounts = new int[ALPHABET_SIZE];
+        int[] vectorCounts = new int[ALPHABET_SIZE];
+        scalarKernel.countLetters(src, 0, size, scalarCounts);
+        vectorKernel.countLetters(src, 0, size, vectorCounts);
+        if (!java.util.Arrays.equals(scalarCounts, vectorCounts)) {
+            throw new AssertionError("histogrammes différents");
+        }
+        for (int pass = 0; pass < 3; ++pass) {
+            long start = System.nanoTime();
+            for (int r = 0; r < rounds; ++r) {
+                scalarKernel.shift(r % ALPHABET_SIZE, src, 0, scalar, 0, size);
+            }
+            long middle = System.nanoTime();
+            for (int r = 0; r < rounds; ++r) {
+                vectorKernel.shift(r % ALPHABET_SIZE, src, 0, vector, 0, size);
+            }
+            long end = System.nanoTime();
+            System.out.printf("scalaire : %.0f Mo/s ; vectoriel (%d octets) :"
+                    + " %.0f Mo/s%n",
+                    (double) size * rounds / ((middle - start) / 1e3),
+                    SPECIES.length(),
+                    (double) size * rounds / ((end - middle) / 1e3));
+            start = System.nanoTime();
+            for (int r = 0; r < rounds; ++r) {
+                scalarKernel.countLetters(src, 0, size, scalarCounts);
+            }
+            middle = System.nanoTime();
+            for (int r = 0; r < rounds; ++r) {
+                vectorKernel.countLetters(src, 0, size, vectorCounts);
+            }
+            end = System.nanoTime();
+            System.out.printf("comptage scalaire : %.0f Mo/s ; vectoriel :"
+                    + " %.0f Mo/s%n",
+                    (double) size * rounds / ((middle - start) / 1e3),
+                    (double) size * rounds / ((end - middle) / 1e3));
+        }
+    }
+}